@@ -0,0 +1,153 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.davemeier82.homeautomation.core.device.Device;
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.core.mqtt.MqttClient;
+import io.github.davemeier82.homeautomation.core.repositories.DeviceRepository;
+import io.github.davemeier82.homeautomation.shelly.device.aggregation.ShellyPowerAggregator;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind;
+import io.github.davemeier82.homeautomation.shelly.device.frame.ShellyFrameAssembler;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.Shelly1MessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.Shelly1MiniGen3MessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.Shelly25MessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.Shelly2MessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyDeviceMessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyDimmerMessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyDoorWindowMessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyHtMessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandleRegistry;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stubs for the homeautomation-core services. The value update services of the core are concrete classes, so the
+ * processors are measured up to the {@link ShellyValueFilter}, which consumes every value and rejects it.
+ */
+final class BenchmarkFixtures {
+
+  static final OffsetDateTime RECEIVED_AT = OffsetDateTime.parse("2024-05-24T10:00:00Z");
+
+  private BenchmarkFixtures() {
+  }
+
+  static Set<ShellyDeviceMessageProcessor> processors(ShellyValueFilter valueFilter) {
+    ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    ShellyPropertyHandleRegistry propertyHandles = new ShellyPropertyHandleRegistry();
+    return Set.of(
+        new Shelly1MessageProcessor(null, valueFilter, propertyHandles),
+        new Shelly1MiniGen3MessageProcessor(null, objectMapper, valueFilter, propertyHandles),
+        new Shelly2MessageProcessor(null, null, null, null, valueFilter, ShellyPowerAggregator.NONE, propertyHandles),
+        new Shelly25MessageProcessor(null, null, null, null, valueFilter, ShellyPowerAggregator.NONE, propertyHandles),
+        new ShellyDimmerMessageProcessor(null, null, objectMapper, valueFilter, propertyHandles),
+        new ShellyDoorWindowMessageProcessor(null, null, null, valueFilter, ShellyFrameAssembler.IMMEDIATE, propertyHandles),
+        new ShellyHtMessageProcessor(null, null, null, valueFilter, ShellyFrameAssembler.IMMEDIATE, propertyHandles));
+  }
+
+  static DeviceRepository emptyDeviceRepository() {
+    return stub(DeviceRepository.class, (method, args) -> "getByDeviceId".equals(method.getName()) ? Optional.empty() : null);
+  }
+
+  static DeviceRepository inMemoryDeviceRepository() {
+    Map<DeviceId, Device> devices = new ConcurrentHashMap<>();
+    return stub(DeviceRepository.class, (method, args) -> switch (method.getName()) {
+      case "getByDeviceId" -> Optional.ofNullable(devices.get((DeviceId) args[0]));
+      case "save" -> {
+        Device device = (Device) args[0];
+        devices.put(new DeviceId(device.getId(), device.getType()), device);
+        yield null;
+      }
+      default -> null;
+    });
+  }
+
+  static MqttClient mqttClient(PublishedMessages publishedMessages) {
+    return stub(MqttClient.class, (method, args) -> {
+      if ("publish".equals(method.getName())) {
+        publishedMessages.record((String) args[0], (String) args[1]);
+      }
+      return null;
+    });
+  }
+
+  private static <T> T stub(Class<T> type, StubMethod stubMethod) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+      if (method.getDeclaringClass() == Object.class) {
+        return switch (method.getName()) {
+          case "hashCode" -> System.identityHashCode(proxy);
+          case "equals" -> proxy == args[0];
+          default -> type.getSimpleName() + " stub";
+        };
+      }
+      return stubMethod.invoke(method, args);
+    }));
+  }
+
+  @FunctionalInterface
+  private interface StubMethod {
+    Object invoke(Method method, Object[] args);
+  }
+
+  static final class PublishedMessages {
+    long count;
+    long length;
+
+    void record(String topic, String message) {
+      count++;
+      length += topic.length() + message.length();
+    }
+  }
+
+  /**
+   * Consumes every value without forwarding it to the update services.
+   */
+  static final class ConsumingValueFilter implements ShellyValueFilter {
+    long count;
+    double sum;
+
+    @Override
+    public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, boolean value) {
+      count++;
+      return false;
+    }
+
+    @Override
+    public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, Enum<?> value) {
+      count++;
+      sum += value.ordinal();
+      return false;
+    }
+
+    @Override
+    public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, double value) {
+      count++;
+      sum += value;
+      return false;
+    }
+  }
+}
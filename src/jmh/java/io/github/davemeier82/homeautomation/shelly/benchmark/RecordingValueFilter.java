@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.benchmark;
+
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stands in for the value update services: counts the values a delegate filter lets through per
+ * {@link ShellyValueKind}, each of which is published by exactly one update service, and stops them there.
+ */
+class RecordingValueFilter implements ShellyValueFilter {
+
+  private final ShellyValueFilter delegate;
+  private final Map<ShellyValueKind, LongAdder> updates = new EnumMap<>(ShellyValueKind.class);
+
+  RecordingValueFilter(ShellyValueFilter delegate) {
+    this.delegate = delegate;
+    for (ShellyValueKind kind : ShellyValueKind.values()) {
+      updates.put(kind, new LongAdder());
+    }
+  }
+
+  @Override
+  public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, boolean value) {
+    return record(kind, delegate.accept(devicePropertyId, kind, value));
+  }
+
+  @Override
+  public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, Enum<?> value) {
+    return record(kind, delegate.accept(devicePropertyId, kind, value));
+  }
+
+  @Override
+  public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, double value) {
+    return record(kind, delegate.accept(devicePropertyId, kind, value));
+  }
+
+  long getUpdateCount(ShellyValueKind kind) {
+    return updates.get(kind).sum();
+  }
+
+  void reset() {
+    updates.values().forEach(LongAdder::reset);
+  }
+
+  private boolean record(ShellyValueKind kind, boolean accepted) {
+    if (accepted) {
+      updates.get(kind).increment();
+    }
+    return false;
+  }
+}
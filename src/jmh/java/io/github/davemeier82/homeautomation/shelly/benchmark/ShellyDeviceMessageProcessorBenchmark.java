@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.benchmark;
+
+import io.github.davemeier82.homeautomation.shelly.ShellyTopic;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageHandler;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.davemeier82.homeautomation.shelly.benchmark.BenchmarkFixtures.RECEIVED_AT;
+
+/**
+ * Routing of a parsed topic and payload mapping in the device message processors.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ShellyDeviceMessageProcessorBenchmark {
+
+  @Param
+  private ShellyMessageSample sample;
+
+  private BenchmarkFixtures.ConsumingValueFilter valueFilter;
+  private ShellyMessageRouter router;
+  private ShellyTopic topic;
+  private ShellyMessageHandler handler;
+  private ByteBuffer payload;
+
+  @Setup
+  public void setUp() {
+    valueFilter = new BenchmarkFixtures.ConsumingValueFilter();
+    router = new ShellyMessageRouter(BenchmarkFixtures.processors(valueFilter));
+    topic = ShellyTopicFactory.parseTopic(sample.topic()).orElseThrow();
+    handler = router.findHandler(topic);
+    if (handler == null) {
+      throw new IllegalStateException("no route for " + sample.topic());
+    }
+    payload = sample.payload();
+  }
+
+  @Benchmark
+  public ShellyMessageHandler findHandler() {
+    return router.findHandler(topic);
+  }
+
+  @Benchmark
+  public long handle() {
+    handler.handle(topic, payload, RECEIVED_AT);
+    return valueFilter.count;
+  }
+}
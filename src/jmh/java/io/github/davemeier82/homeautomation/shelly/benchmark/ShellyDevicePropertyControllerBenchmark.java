@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.benchmark;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.core.mqtt.MqttClient;
+import io.github.davemeier82.homeautomation.shelly.SequentialShellyRpcIdGenerator;
+import io.github.davemeier82.homeautomation.shelly.ShellyMetrics;
+import io.github.davemeier82.homeautomation.shelly.ShellyRpcCorrelator;
+import io.github.davemeier82.homeautomation.shelly.device.command.ShellyOptimisticStates;
+import io.github.davemeier82.homeautomation.shelly.device.property.controller.ShellyDimmerDevicePropertyController;
+import io.github.davemeier82.homeautomation.shelly.device.property.controller.ShellyRelayDevicePropertyController;
+import io.github.davemeier82.homeautomation.shelly.device.property.controller.ShellyRollerDevicePropertyController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_1;
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_1_MINI_GEN3;
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_25;
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_DIMMER_2;
+
+/**
+ * Command topic and payload encoding of the property controllers. The MQTT client is a dynamic proxy, which adds the
+ * same small overhead to every benchmark.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ShellyDevicePropertyControllerBenchmark {
+
+  private BenchmarkFixtures.PublishedMessages publishedMessages;
+  private ShellyRelayDevicePropertyController relayController;
+  private ShellyRollerDevicePropertyController rollerController;
+  private ShellyDimmerDevicePropertyController dimmerController;
+  private DevicePropertyId relay;
+  private DevicePropertyId relayGen3;
+  private DevicePropertyId roller;
+  private DevicePropertyId dimmer;
+
+  @Setup
+  public void setUp() {
+    publishedMessages = new BenchmarkFixtures.PublishedMessages();
+    MqttClient mqttClient = BenchmarkFixtures.mqttClient(publishedMessages);
+    relayController = new ShellyRelayDevicePropertyController(mqttClient, new SequentialShellyRpcIdGenerator(), ShellyMetrics.NONE, Runnable::run,
+        ShellyRpcCorrelator.NONE, ShellyOptimisticStates.NONE);
+    rollerController = new ShellyRollerDevicePropertyController(mqttClient);
+    dimmerController = new ShellyDimmerDevicePropertyController(mqttClient);
+    relay = new DevicePropertyId(new DeviceId("98CDAC1F2A3B", SHELLY_1), "0");
+    relayGen3 = new DevicePropertyId(new DeviceId("1234567abcde", SHELLY_1_MINI_GEN3), "0");
+    roller = new DevicePropertyId(new DeviceId("98CDAC1F2A3B", SHELLY_25), "0");
+    dimmer = new DevicePropertyId(new DeviceId("40915156AC0F", SHELLY_DIMMER_2), "1");
+  }
+
+  @Benchmark
+  public long relayTurnOn() {
+    relayController.turnOn(relay);
+    return publishedMessages.length;
+  }
+
+  @Benchmark
+  public long relayGen3TurnOn() {
+    relayController.turnOn(relayGen3);
+    return publishedMessages.length;
+  }
+
+  @Benchmark
+  public long rollerSetPosition() {
+    rollerController.setPosition(roller, 42);
+    return publishedMessages.length;
+  }
+
+  @Benchmark
+  public long dimmerSetDimmingLevel() {
+    dimmerController.settDimmingLevel(dimmer, 64);
+    return publishedMessages.length;
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.benchmark;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Messages as they are published by the devices.
+ */
+public enum ShellyMessageSample {
+  SHELLY_1_RELAY("shellies/shelly1-98CDAC1F2A3B/relay/0", "on"),
+  SHELLY_25_ROLLER_STATE("shellies/shellyswitch25-98CDAC1F2A3B/roller/0", "open"),
+  SHELLY_25_ROLLER_POSITION("shellies/shellyswitch25-98CDAC1F2A3B/roller/0/pos", "42"),
+  SHELLY_25_POWER("shellies/shellyswitch25-98CDAC1F2A3B/power/0", "183.27"),
+  SHELLY_DIMMER_STATUS("shellies/shellydimmer2-40915156AC0F/light/0/status",
+      "{\"ison\":true,\"source\":\"mqtt\",\"has_timer\":false,\"timer_started\":0,\"timer_duration\":0,\"timer_remaining\":0,\"mode\":\"white\",\"brightness\":64}"),
+  SHELLY_HT_TEMPERATURE("shellies/shellyht-E01234/sensor/temperature", "21.37"),
+  SHELLY_DOOR_WINDOW_STATE("shellies/shellydw2-E05678/sensor/state", "open"),
+  SHELLY_1_MINI_GEN3_STATUS("shellies/shelly1minig3-1234567abcde/events/rpc",
+      "{\"src\":\"shelly1minig3-1234567abcde\",\"dst\":\"shellies/shelly1minig3-1234567abcde/events\",\"method\":\"NotifyStatus\","
+          + "\"params\":{\"ts\":1716544800.12,\"switch:0\":{\"id\":0,\"apower\":0.0,\"output\":true,\"temperature\":{\"tC\":41.2,\"tF\":106.2}}}}");
+
+  private final String topic;
+  private final byte[] payload;
+
+  ShellyMessageSample(String topic, String payload) {
+    this.topic = topic;
+    this.payload = payload.getBytes(UTF_8);
+  }
+
+  public String topic() {
+    return topic;
+  }
+
+  public ByteBuffer payload() {
+    return ByteBuffer.wrap(payload);
+  }
+}
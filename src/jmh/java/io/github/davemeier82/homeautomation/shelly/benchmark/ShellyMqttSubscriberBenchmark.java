@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.benchmark;
+
+import io.github.davemeier82.homeautomation.shelly.ShellyMessageDispatcher;
+import io.github.davemeier82.homeautomation.shelly.ShellyMetrics;
+import io.github.davemeier82.homeautomation.shelly.ShellyMqttSubscriber;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopicPreFilter;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopicSubscriptions;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceFactory;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.davemeier82.homeautomation.shelly.benchmark.BenchmarkFixtures.RECEIVED_AT;
+
+/**
+ * A message from the MQTT callback through topic parsing, routing, device lookup and payload mapping.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ShellyMqttSubscriberBenchmark {
+
+  @Param
+  private ShellyMessageSample sample;
+
+  private BenchmarkFixtures.ConsumingValueFilter valueFilter;
+  private ShellyMqttSubscriber subscriber;
+  private String topic;
+  private Optional<ByteBuffer> payload;
+
+  @Setup
+  public void setUp() {
+    valueFilter = new BenchmarkFixtures.ConsumingValueFilter();
+    ShellyDeviceRegistry deviceRegistry = new ShellyDeviceRegistry(new ShellyDeviceFactory(), BenchmarkFixtures.emptyDeviceRepository());
+    subscriber = new ShellyMqttSubscriber(deviceRegistry, BenchmarkFixtures.processors(valueFilter), ShellyTopicFactory::parseTopic,
+        ShellyMessageDispatcher.DIRECT, Clock.fixed(RECEIVED_AT.toInstant(), RECEIVED_AT.getOffset()), ShellyMetrics.NONE, ShellyTopicSubscriptions.ALL, ShellyTopicPreFilter.NONE);
+    topic = sample.topic();
+    payload = Optional.of(sample.payload());
+    subscriber.processMessage(topic, payload);
+  }
+
+  @Benchmark
+  public long processMessage() {
+    subscriber.processMessage(topic, payload);
+    return valueFilter.count;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.benchmark;
+
+import io.github.davemeier82.homeautomation.shelly.CachingShellyTopicParser;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopic;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Topic parsing with and without the topic cache.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ShellyTopicParserBenchmark {
+
+  @Param
+  private ShellyMessageSample sample;
+
+  private String topic;
+  private CachingShellyTopicParser cachingParser;
+
+  @Setup
+  public void setUp() {
+    topic = sample.topic();
+    cachingParser = new CachingShellyTopicParser(1000);
+    cachingParser.parseTopic(topic);
+  }
+
+  @Benchmark
+  public Optional<ShellyTopic> parseTopic() {
+    return ShellyTopicFactory.parseTopic(topic);
+  }
+
+  @Benchmark
+  public Optional<ShellyTopic> parseCachedTopic() {
+    return cachingParser.parseTopic(topic);
+  }
+}
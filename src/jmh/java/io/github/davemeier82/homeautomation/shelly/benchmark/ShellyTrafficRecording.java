@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.benchmark;
+
+import io.github.davemeier82.homeautomation.shelly.ShellyTopic;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Captured MQTT traffic. Every line holds the milliseconds since the start of the capture, the topic and the payload,
+ * separated by a tab. Empty lines and lines starting with {@code #} are ignored.
+ */
+public final class ShellyTrafficRecording {
+
+  private final List<RecordedMessage> messages;
+
+  private ShellyTrafficRecording(List<RecordedMessage> messages) {
+    this.messages = List.copyOf(messages);
+  }
+
+  public static ShellyTrafficRecording read(Path file) throws IOException {
+    List<RecordedMessage> messages = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        if (line.isBlank() || line.startsWith("#")) {
+          continue;
+        }
+        String[] fields = line.split("\t", 3);
+        if (fields.length < 2) {
+          throw new IOException("line " + lineNumber + ": expected <millis>\\t<topic>\\t<payload>");
+        }
+        long offsetMillis;
+        try {
+          offsetMillis = Long.parseLong(fields[0].trim());
+        } catch (NumberFormatException e) {
+          throw new IOException("line " + lineNumber + ": invalid timestamp " + fields[0], e);
+        }
+        String topic = fields[1];
+        byte[] payload = fields.length == 3 ? fields[2].getBytes(UTF_8) : new byte[0];
+        String deviceType = ShellyTopicFactory.parseTopic(topic).map(ShellyTopic::deviceType).map(Enum::name).orElse("UNKNOWN");
+        messages.add(new RecordedMessage(offsetMillis * 1_000_000L, topic, payload, deviceType));
+      }
+    }
+    messages.sort((a, b) -> Long.compare(a.offsetNanos(), b.offsetNanos()));
+    return new ShellyTrafficRecording(messages);
+  }
+
+  public List<RecordedMessage> messages() {
+    return messages;
+  }
+
+  public long durationNanos() {
+    return messages.isEmpty() ? 0 : messages.get(messages.size() - 1).offsetNanos();
+  }
+
+  public record RecordedMessage(long offsetNanos, String topic, byte[] payload, String deviceType) {
+
+    public ByteBuffer payloadBuffer() {
+      return ByteBuffer.wrap(payload);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.benchmark;
+
+import io.github.davemeier82.homeautomation.shelly.ShellyMessageDispatcher;
+import io.github.davemeier82.homeautomation.shelly.ShellyMetrics;
+import io.github.davemeier82.homeautomation.shelly.ShellyMqttSubscriber;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopicPreFilter;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopicSubscriptions;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceFactory;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceRegistry;
+import io.github.davemeier82.homeautomation.shelly.device.filter.DeadbandShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays captured traffic (see {@link ShellyTrafficRecording}) through a {@link ShellyMqttSubscriber} and reports the
+ * sustained message rate, the latency per device type and the number of updates per value kind.
+ * <p>
+ * Usage: {@code ShellyTrafficReplay <file> [--speed=<factor>|max] [--repeat=<count>] [--warmup=<count>] [--value-filter]}
+ * <p>
+ * With a speed factor, messages are sent at their recorded offsets divided by the factor and the latency is measured
+ * from the intended send time, so falling behind the recording and the wake-up delay of the replay thread show up in
+ * the percentiles. With {@code max}, messages are sent back to back and the latency is the processing time. Warm-up
+ * passes are sent back to back and not reported.
+ */
+public final class ShellyTrafficReplay {
+
+  private final ShellyTrafficRecording recording;
+  private final double speed;
+  private final int repeat;
+  private final int warmup;
+  private final RecordingValueFilter valueFilter;
+  private final ShellyMqttSubscriber subscriber;
+  private final Map<String, LatencyRecorder> latencies = new TreeMap<>();
+  private long elapsedNanos;
+  private long messageCount;
+
+  ShellyTrafficReplay(ShellyTrafficRecording recording, double speed, int repeat, int warmup, ShellyValueFilter valueFilter) {
+    this.recording = recording;
+    this.speed = speed;
+    this.repeat = repeat;
+    this.warmup = warmup;
+    this.valueFilter = new RecordingValueFilter(valueFilter);
+    ShellyDeviceRegistry deviceRegistry = new ShellyDeviceRegistry(new ShellyDeviceFactory(), BenchmarkFixtures.inMemoryDeviceRepository());
+    subscriber = new ShellyMqttSubscriber(deviceRegistry, BenchmarkFixtures.processors(this.valueFilter), ShellyTopicFactory::parseTopic,
+        ShellyMessageDispatcher.DIRECT, Clock.systemDefaultZone(), ShellyMetrics.NONE, ShellyTopicSubscriptions.ALL, ShellyTopicPreFilter.NONE);
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("usage: ShellyTrafficReplay <file> [--speed=<factor>|max] [--repeat=<count>] [--warmup=<count>] [--value-filter]");
+      System.exit(1);
+    }
+    double speed = 1;
+    int repeat = 1;
+    int warmup = 0;
+    ShellyValueFilter valueFilter = ShellyValueFilter.NONE;
+    for (int i = 1; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.startsWith("--speed=")) {
+        String value = arg.substring("--speed=".length());
+        speed = "max".equals(value) ? Double.POSITIVE_INFINITY : Double.parseDouble(value);
+      } else if (arg.startsWith("--repeat=")) {
+        repeat = Integer.parseInt(arg.substring("--repeat=".length()));
+      } else if (arg.startsWith("--warmup=")) {
+        warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+      } else if ("--value-filter".equals(arg)) {
+        valueFilter = new DeadbandShellyValueFilter(Clock.systemDefaultZone(), DeadbandShellyValueFilter.Deadband.EXACT);
+      } else {
+        throw new IllegalArgumentException("unknown option " + arg);
+      }
+    }
+    if (!(speed > 0) || repeat < 1 || warmup < 0) {
+      throw new IllegalArgumentException("speed and repeat must be positive, warmup must not be negative");
+    }
+    ShellyTrafficReplay replay = new ShellyTrafficReplay(ShellyTrafficRecording.read(Path.of(args[0])), speed, repeat, warmup, valueFilter);
+    replay.run();
+    replay.report(System.out);
+  }
+
+  void run() {
+    for (int cycle = 0; cycle < warmup; cycle++) {
+      for (ShellyTrafficRecording.RecordedMessage message : recording.messages()) {
+        subscriber.processMessage(message.topic(), Optional.of(message.payloadBuffer()));
+      }
+    }
+    valueFilter.reset();
+    boolean paced = speed != Double.POSITIVE_INFINITY;
+    long cycleNanos = recording.durationNanos() + 1;
+    long start = System.nanoTime();
+    for (int cycle = 0; cycle < repeat; cycle++) {
+      for (ShellyTrafficRecording.RecordedMessage message : recording.messages()) {
+        long intended = paced ? start + (long) ((cycle * cycleNanos + message.offsetNanos()) / speed) : System.nanoTime();
+        if (paced) {
+          long wait;
+          while ((wait = intended - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+          }
+        }
+        subscriber.processMessage(message.topic(), Optional.of(message.payloadBuffer()));
+        long latency = System.nanoTime() - intended;
+        latencies.computeIfAbsent(message.deviceType(), t -> new LatencyRecorder()).record(latency);
+        messageCount++;
+      }
+    }
+    elapsedNanos = System.nanoTime() - start;
+  }
+
+  void report(PrintStream out) {
+    double seconds = elapsedNanos / 1e9;
+    out.printf("replayed %d messages in %.3f s: %.0f messages/s%n%n", messageCount, seconds, messageCount / seconds);
+    out.printf("%-22s %10s %10s %10s %10s %10s %10s%n", "latency (us)", "count", "p50", "p90", "p99", "p99.9", "max");
+    latencies.forEach((deviceType, recorder) -> {
+      long[] sorted = recorder.sorted();
+      out.printf("%-22s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", deviceType, sorted.length,
+          percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 99.9), sorted[sorted.length - 1] / 1e3);
+    });
+    out.printf("%n%-22s %10s%n", "updates", "count");
+    for (ShellyValueKind kind : ShellyValueKind.values()) {
+      out.printf("%-22s %10d%n", kind, valueFilter.getUpdateCount(kind));
+    }
+  }
+
+  private static double percentile(long[] sorted, double percentile) {
+    int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return sorted[Math.max(index, 0)] / 1e3;
+  }
+
+  private static final class LatencyRecorder {
+    private long[] values = new long[1024];
+    private int size;
+
+    void record(long nanos) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = nanos;
+    }
+
+    long[] sorted() {
+      long[] sorted = Arrays.copyOf(values, size);
+      Arrays.sort(sorted);
+      return sorted;
+    }
+  }
+}
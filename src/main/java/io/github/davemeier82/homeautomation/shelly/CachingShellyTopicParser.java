@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches parsed topics in a {@link ShellyBoundedCache}: lookups are lock-free and a full cache evicts the least
+ * recently used topics one at a time. Topics that cannot be parsed are not cached.
+ */
+public class CachingShellyTopicParser implements ShellyTopicParser {
+
+  private final ShellyTopicParser delegate;
+  private final ShellyBoundedCache<String, Optional<ShellyTopic>> cache;
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+
+  public CachingShellyTopicParser(int maximumSize) {
+    this(ShellyTopicFactory::parseTopic, maximumSize);
+  }
+
+  public CachingShellyTopicParser(ShellyTopicParser delegate, int maximumSize) {
+    this.delegate = delegate;
+    cache = new ShellyBoundedCache<>(maximumSize);
+  }
+
+  @Override
+  public Optional<ShellyTopic> parseTopic(String topic) {
+    Optional<ShellyTopic> cached = cache.get(topic);
+    if (cached != null) {
+      hitCount.increment();
+      return cached;
+    }
+    missCount.increment();
+    Optional<ShellyTopic> parsed = delegate.parseTopic(topic);
+    if (parsed.isPresent()) {
+      return cache.putIfAbsent(topic, parsed);
+    }
+    return parsed;
+  }
+
+  public int getMaximumSize() {
+    return cache.getMaximumSize();
+  }
+
+  public int size() {
+    return cache.size();
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  public long getEvictionCount() {
+    return cache.getEvictionCount();
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+}
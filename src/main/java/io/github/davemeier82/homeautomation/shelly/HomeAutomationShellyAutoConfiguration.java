@@ -19,22 +19,62 @@ package io.github.davemeier82.homeautomation.shelly;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.davemeier82.homeautomation.core.mqtt.MqttClient;
 import io.github.davemeier82.homeautomation.core.repositories.DeviceRepository;
+import io.github.davemeier82.homeautomation.shelly.StripedShellyMessageDispatcher.OverflowPolicy;
 import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceFactory;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceRegistry;
 import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceTypeFactory;
+import io.github.davemeier82.homeautomation.shelly.device.command.LatestWinsShellyCommandCoalescer;
+import io.github.davemeier82.homeautomation.shelly.device.command.ShellyCommandCoalescer;
+import io.github.davemeier82.homeautomation.shelly.device.command.ShellyOptimisticStates;
 import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyDeviceMessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.property.controller.ShellyBulkCommandExecutor;
 import io.github.davemeier82.homeautomation.shelly.device.property.controller.ShellyDimmerDevicePropertyController;
 import io.github.davemeier82.homeautomation.shelly.device.property.controller.ShellyRelayDevicePropertyController;
 import io.github.davemeier82.homeautomation.shelly.device.property.controller.ShellyRollerDevicePropertyController;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
 import java.util.Set;
 
 @Configuration
+@AutoConfigureAfter(value = HomeAutomationShellyDeviceMessageProcessorAutoConfiguration.class,
+    name = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 public class HomeAutomationShellyAutoConfiguration {
 
+  @Configuration
+  @ConditionalOnClass(MeterRegistry.class)
+  static class MicrometerConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(MeterRegistry.class)
+    @ConditionalOnProperty(prefix = "homeautomation.shelly.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+    ShellyMetrics micrometerShellyMetrics(MeterRegistry meterRegistry) {
+      return new MicrometerShellyMetrics(meterRegistry);
+    }
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyMetrics shellyMetrics() {
+    return ShellyMetrics.NONE;
+  }
+
   @Bean
   @ConditionalOnMissingBean
   ShellyDeviceFactory shellyDeviceFactory() {
@@ -48,31 +88,169 @@ public class HomeAutomationShellyAutoConfiguration {
     return new ShellyDeviceTypeFactory();
   }
 
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(prefix = "homeautomation.shelly.topic-cache", name = "enabled", havingValue = "true")
+  CachingShellyTopicParser cachingShellyTopicParser(@Value("${homeautomation.shelly.topic-cache.maximum-size:10000}") int maximumSize) {
+    return new CachingShellyTopicParser(maximumSize);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyTopicParser shellyTopicParser() {
+    return ShellyTopicFactory::parseTopic;
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(prefix = "homeautomation.shelly.topic-filter", name = "enabled", havingValue = "true")
+  RejectingShellyTopicPreFilter rejectingShellyTopicPreFilter(@Value("${homeautomation.shelly.topic-filter.maximum-size:1000}") int maximumSize,
+                                                              @Value("${homeautomation.shelly.topic-filter.log-interval:PT1H}") Duration logInterval
+  ) {
+    return new RejectingShellyTopicPreFilter(maximumSize, logInterval);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyTopicPreFilter shellyTopicPreFilter() {
+    return ShellyTopicPreFilter.NONE;
+  }
+
   @Bean
   @ConditionalOnMissingBean
   @ConditionalOnBean({ShellyDeviceFactory.class, DeviceRepository.class})
-  ShellyMqttSubscriber shellyMqttSubscriber(ShellyDeviceFactory shellyDeviceFactory, DeviceRepository deviceRepository, Set<ShellyDeviceMessageProcessor> shellyDeviceMessageProcessors) {
-    return new ShellyMqttSubscriber(shellyDeviceFactory, deviceRepository, shellyDeviceMessageProcessors);
+  ShellyDeviceRegistry shellyDeviceRegistry(ShellyDeviceFactory shellyDeviceFactory, DeviceRepository deviceRepository, ShellyMetrics shellyMetrics) {
+    return new ShellyDeviceRegistry(shellyDeviceFactory, deviceRepository, shellyMetrics);
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(prefix = "homeautomation.shelly.async", name = "enabled", havingValue = "true")
+  StripedShellyMessageDispatcher stripedShellyMessageDispatcher(@Value("${homeautomation.shelly.async.stripes:16}") int stripes,
+                                                                @Value("${homeautomation.shelly.async.queue-capacity:1024}") int queueCapacity,
+                                                                @Value("${homeautomation.shelly.async.overflow-policy:COALESCE}") OverflowPolicy overflowPolicy
+  ) {
+    return new StripedShellyMessageDispatcher(stripes, queueCapacity, overflowPolicy);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyMessageDispatcher shellyMessageDispatcher() {
+    return ShellyMessageDispatcher.DIRECT;
   }
 
   @Bean
   @ConditionalOnMissingBean
+  @ConditionalOnBean(ShellyDeviceRegistry.class)
+  ShellyMqttSubscriber shellyMqttSubscriber(ShellyDeviceRegistry shellyDeviceRegistry,
+                                            Set<ShellyDeviceMessageProcessor> shellyDeviceMessageProcessors,
+                                            ShellyTopicParser shellyTopicParser,
+                                            ShellyMessageDispatcher shellyMessageDispatcher,
+                                            ShellyMetrics shellyMetrics,
+                                            ShellyTopicPreFilter shellyTopicPreFilter,
+                                            ObjectProvider<Clock> clock,
+                                            ConfigurableListableBeanFactory beanFactory,
+                                            @Value("${homeautomation.shelly.targeted-subscriptions.enabled:false}") boolean targetedSubscriptions,
+                                            Environment environment
+  ) {
+    ShellyTopicSubscriptions topicSubscriptions = new ShellyTopicSubscriptions(targetedSubscriptions, Binder.get(environment)
+        .bind("homeautomation.shelly.targeted-subscriptions.topic-filters", Bindable.listOf(String.class))
+        .orElse(List.of()));
+    ShellyMqttSubscriber subscriber = new ShellyMqttSubscriber(shellyDeviceRegistry, shellyDeviceMessageProcessors, shellyTopicParser, shellyMessageDispatcher,
+        clock.getIfAvailable(Clock::systemDefaultZone), shellyMetrics, topicSubscriptions, shellyTopicPreFilter);
+    // registered with the subscriber they deliver to, so they never exist without it
+    subscriber.getAdditionalTopicFilters().forEach(topicFilter ->
+        beanFactory.registerSingleton("shellyTopicSubscription:" + topicFilter, new ShellyTopicSubscription(topicFilter, subscriber)));
+    return subscriber;
+  }
+
+  @Bean(initMethod = "start", destroyMethod = "close")
+  @ConditionalOnMissingBean
+  @ConditionalOnBean({ShellyDeviceRegistry.class, MqttClient.class})
+  @ConditionalOnProperty(prefix = "homeautomation.shelly.announce", name = "enabled", havingValue = "true")
+  ShellyAnnounceSubscriber shellyAnnounceSubscriber(ShellyDeviceRegistry shellyDeviceRegistry,
+                                                    MqttClient mqttClient,
+                                                    ObjectMapper objectMapper,
+                                                    @Value("${homeautomation.shelly.announce.start-delay:PT5S}") Duration startDelay,
+                                                    @Value("${homeautomation.shelly.announce.batch-delay:PT0.5S}") Duration batchDelay
+  ) {
+    return new ShellyAnnounceSubscriber(shellyDeviceRegistry, mqttClient, objectMapper, startDelay, batchDelay);
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(prefix = "homeautomation.shelly.command-coalescing", name = "enabled", havingValue = "true")
+  LatestWinsShellyCommandCoalescer latestWinsShellyCommandCoalescer(@Value("${homeautomation.shelly.command-coalescing.interval:PT0.25S}") Duration interval) {
+    return new LatestWinsShellyCommandCoalescer(interval);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyCommandCoalescer shellyCommandCoalescer() {
+    return ShellyCommandCoalescer.IMMEDIATE;
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnMissingBean
   @ConditionalOnBean(MqttClient.class)
-  ShellyRollerDevicePropertyController shellyRollerDevicePropertyController(MqttClient mqttClient) {
-    return new ShellyRollerDevicePropertyController(mqttClient);
+  ShellyBulkCommandExecutor shellyBulkCommandExecutor(@Value("${homeautomation.shelly.bulk-commands.threads:4}") int threads) {
+    return new ShellyBulkCommandExecutor(threads);
   }
 
   @Bean
   @ConditionalOnMissingBean
   @ConditionalOnBean(MqttClient.class)
-  ShellyDimmerDevicePropertyController shellyDimmerDevicePropertyController(MqttClient mqttClient) {
-    return new ShellyDimmerDevicePropertyController(mqttClient);
+  ShellyRollerDevicePropertyController shellyRollerDevicePropertyController(MqttClient mqttClient,
+                                                                            ShellyMetrics shellyMetrics,
+                                                                            ShellyCommandCoalescer shellyCommandCoalescer,
+                                                                            ShellyOptimisticStates shellyOptimisticStates,
+                                                                            ShellyBulkCommandExecutor shellyBulkCommandExecutor
+  ) {
+    return new ShellyRollerDevicePropertyController(mqttClient, shellyMetrics, shellyCommandCoalescer, shellyBulkCommandExecutor::execute, shellyOptimisticStates);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnBean(MqttClient.class)
+  ShellyDimmerDevicePropertyController shellyDimmerDevicePropertyController(MqttClient mqttClient,
+                                                                            ShellyMetrics shellyMetrics,
+                                                                            ShellyCommandCoalescer shellyCommandCoalescer
+  ) {
+    return new ShellyDimmerDevicePropertyController(mqttClient, shellyMetrics, shellyCommandCoalescer);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyRpcIdGenerator shellyRpcIdGenerator() {
+    return new SequentialShellyRpcIdGenerator();
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(prefix = "homeautomation.shelly.rpc-responses", name = "enabled", havingValue = "true")
+  TimerWheelShellyRpcCorrelator timerWheelShellyRpcCorrelator(ObjectMapper objectMapper,
+                                                              @Value("${homeautomation.shelly.rpc-responses.tick:PT0.1S}") Duration tick
+  ) {
+    return new TimerWheelShellyRpcCorrelator(objectMapper, tick);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyRpcCorrelator shellyRpcCorrelator() {
+    return ShellyRpcCorrelator.NONE;
   }
 
   @Bean
   @ConditionalOnMissingBean
   @ConditionalOnBean(MqttClient.class)
-  ShellyRelayDevicePropertyController shellyRelayDevicePropertyController(MqttClient mqttClient, ObjectMapper objectMapper) {
-    return new ShellyRelayDevicePropertyController(mqttClient, objectMapper);
+  ShellyRelayDevicePropertyController shellyRelayDevicePropertyController(MqttClient mqttClient,
+                                                                          ShellyRpcIdGenerator shellyRpcIdGenerator,
+                                                                          ShellyMetrics shellyMetrics,
+                                                                          ShellyRpcCorrelator shellyRpcCorrelator,
+                                                                          ShellyOptimisticStates shellyOptimisticStates,
+                                                                          ShellyBulkCommandExecutor shellyBulkCommandExecutor
+  ) {
+    return new ShellyRelayDevicePropertyController(mqttClient, shellyRpcIdGenerator, shellyMetrics, shellyBulkCommandExecutor::execute, shellyRpcCorrelator,
+        shellyOptimisticStates);
   }
 }
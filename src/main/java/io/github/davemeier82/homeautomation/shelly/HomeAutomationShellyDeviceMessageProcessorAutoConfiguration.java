@@ -27,6 +27,18 @@ import io.github.davemeier82.homeautomation.core.updater.RollerStateValueUpdateS
 import io.github.davemeier82.homeautomation.core.updater.TemperatureValueUpdateService;
 import io.github.davemeier82.homeautomation.core.updater.WindowStateValueUpdateService;
 import io.github.davemeier82.homeautomation.core.updater.WindowTiltAngleValueUpdateService;
+import io.github.davemeier82.homeautomation.shelly.device.aggregation.ShellyPowerAggregator;
+import io.github.davemeier82.homeautomation.shelly.device.aggregation.WindowedShellyPowerAggregator;
+import io.github.davemeier82.homeautomation.shelly.device.aggregation.WindowedShellyPowerAggregator.Statistic;
+import io.github.davemeier82.homeautomation.shelly.device.command.ReconcilingShellyOptimisticStates;
+import io.github.davemeier82.homeautomation.shelly.device.command.ShellyOptimisticStates;
+import io.github.davemeier82.homeautomation.shelly.device.filter.DeadbandShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.filter.DeadbandShellyValueFilter.Deadband;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind;
+import io.github.davemeier82.homeautomation.shelly.device.frame.ShellyFrameAssembler;
+import io.github.davemeier82.homeautomation.shelly.device.frame.ShellyFrameListener;
+import io.github.davemeier82.homeautomation.shelly.device.frame.WindowedShellyFrameAssembler;
 import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.Shelly1MessageProcessor;
 import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.Shelly1MiniGen3MessageProcessor;
 import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.Shelly25MessageProcessor;
@@ -35,30 +47,144 @@ import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.Shell
 import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyDoorWindow2MessageProcessor;
 import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyDoorWindowMessageProcessor;
 import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyHtMessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandleRegistry;
 import io.github.davemeier82.homeautomation.spring.core.HomeAutomationCoreValueUpdateServiceAutoConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
 
 @Configuration
 @AutoConfigureAfter({HomeAutomationCoreValueUpdateServiceAutoConfiguration.class, JacksonAutoConfiguration.class})
 public class HomeAutomationShellyDeviceMessageProcessorAutoConfiguration {
 
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(prefix = "homeautomation.shelly.value-filter", name = "enabled", havingValue = "true")
+  DeadbandShellyValueFilter deadbandShellyValueFilter(Environment environment,
+                                                      @Value("${homeautomation.shelly.value-filter.absolute-deadband:0}") double absoluteDeadband,
+                                                      @Value("${homeautomation.shelly.value-filter.relative-deadband-percent:0}") double relativeDeadbandPercent,
+                                                      @Value("${homeautomation.shelly.value-filter.max-silence:PT15M}") Duration maxSilence,
+                                                      ObjectProvider<Clock> clock
+  ) {
+    Deadband telemetryDeadband = new Deadband(absoluteDeadband, relativeDeadbandPercent, maxSilence);
+    Map<ShellyValueKind, Deadband> deadbandByKind = new EnumMap<>(ShellyValueKind.class);
+    for (ShellyValueKind kind : ShellyValueKind.values()) {
+      Deadband defaultDeadband = DeadbandShellyValueFilter.TELEMETRY_KINDS.contains(kind) ? telemetryDeadband : Deadband.EXACT;
+      deadbandByKind.put(kind, deadband(environment, kind, defaultDeadband));
+    }
+    return new DeadbandShellyValueFilter(clock.getIfAvailable(Clock::systemUTC), Deadband.EXACT, deadbandByKind);
+  }
+
+  private static Deadband deadband(Environment environment, ShellyValueKind kind, Deadband defaultDeadband) {
+    String prefix = "homeautomation.shelly.value-filter." + kind.name().toLowerCase(Locale.ROOT).replace('_', '-') + ".";
+    return new Deadband(environment.getProperty(prefix + "absolute-deadband", Double.class, defaultDeadband.absolute()),
+        environment.getProperty(prefix + "relative-deadband-percent", Double.class, defaultDeadband.relativePercent()),
+        environment.getProperty(prefix + "max-silence", Duration.class, defaultDeadband.maxSilence()));
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyValueFilter shellyValueFilter() {
+    return ShellyValueFilter.NONE;
+  }
+
+  @Bean(initMethod = "start", destroyMethod = "close")
+  @ConditionalOnMissingBean
+  @ConditionalOnBean(PowerValueUpdateService.class)
+  @ConditionalOnProperty(prefix = "homeautomation.shelly.power-aggregation", name = "enabled", havingValue = "true")
+  WindowedShellyPowerAggregator windowedShellyPowerAggregator(PowerValueUpdateService powerValueUpdateService,
+                                                              @Value("${homeautomation.shelly.power-aggregation.window:PT10S}") Duration window,
+                                                              @Value("${homeautomation.shelly.power-aggregation.statistic:TIME_WEIGHTED_MEAN}") Statistic statistic,
+                                                              ObjectProvider<Clock> clock
+  ) {
+    return new WindowedShellyPowerAggregator(powerValueUpdateService::setValue, clock.getIfAvailable(Clock::systemUTC), window, statistic);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyPowerAggregator shellyPowerAggregator() {
+    return ShellyPowerAggregator.NONE;
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(prefix = "homeautomation.shelly.wake-up-frame", name = "enabled", havingValue = "true")
+  WindowedShellyFrameAssembler windowedShellyFrameAssembler(@Value("${homeautomation.shelly.wake-up-frame.window:PT0.5S}") Duration window,
+                                                            ShellyFrameListener shellyFrameListener
+  ) {
+    return new WindowedShellyFrameAssembler(window, shellyFrameListener);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyFrameListener shellyFrameListener() {
+    return ShellyFrameListener.NONE;
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyFrameAssembler shellyFrameAssembler() {
+    return ShellyFrameAssembler.IMMEDIATE;
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyPropertyHandleRegistry shellyPropertyHandleRegistry() {
+    return new ShellyPropertyHandleRegistry();
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnMissingBean
+  @ConditionalOnBean({RelayStateValueUpdateService.class, RollerStateValueUpdateService.class})
+  @ConditionalOnProperty(prefix = "homeautomation.shelly.optimistic-state", name = "enabled", havingValue = "true")
+  ReconcilingShellyOptimisticStates reconcilingShellyOptimisticStates(RelayStateValueUpdateService relayStateValueUpdateService,
+                                                                      RollerStateValueUpdateService rollerStateValueUpdateService,
+                                                                      ShellyPropertyHandleRegistry shellyPropertyHandleRegistry,
+                                                                      @Value("${homeautomation.shelly.optimistic-state.timeout:PT5S}") Duration timeout
+  ) {
+    return new ReconcilingShellyOptimisticStates(relayStateValueUpdateService::setValue, rollerStateValueUpdateService::setValue, shellyPropertyHandleRegistry, timeout);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ShellyOptimisticStates shellyOptimisticStates() {
+    return ShellyOptimisticStates.NONE;
+  }
+
   @Bean
   @ConditionalOnMissingBean
   @ConditionalOnBean(RelayStateValueUpdateService.class)
-  Shelly1MessageProcessor shelly1MessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService) {
-    return new Shelly1MessageProcessor(relayStateValueUpdateService);
+  Shelly1MessageProcessor shelly1MessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService,
+                                                  ShellyValueFilter shellyValueFilter,
+                                                  ShellyOptimisticStates shellyOptimisticStates,
+                                                  ShellyPropertyHandleRegistry shellyPropertyHandleRegistry
+  ) {
+    return new Shelly1MessageProcessor(relayStateValueUpdateService, shellyOptimisticStates.observe(shellyValueFilter), shellyPropertyHandleRegistry);
   }
 
   @Bean
   @ConditionalOnMissingBean
   @ConditionalOnBean(RelayStateValueUpdateService.class)
-  Shelly1MiniGen3MessageProcessor shelly1MiniGen3MessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService, ObjectMapper objectMapper) {
-    return new Shelly1MiniGen3MessageProcessor(relayStateValueUpdateService, objectMapper);
+  Shelly1MiniGen3MessageProcessor shelly1MiniGen3MessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService,
+                                                                  ObjectMapper objectMapper,
+                                                                  ShellyValueFilter shellyValueFilter,
+                                                                  ShellyOptimisticStates shellyOptimisticStates,
+                                                                  ShellyPropertyHandleRegistry shellyPropertyHandleRegistry
+  ) {
+    return new Shelly1MiniGen3MessageProcessor(relayStateValueUpdateService, objectMapper, shellyOptimisticStates.observe(shellyValueFilter), shellyPropertyHandleRegistry);
   }
 
   @Bean
@@ -67,9 +193,13 @@ public class HomeAutomationShellyDeviceMessageProcessorAutoConfiguration {
   Shelly2MessageProcessor shelly2MessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService,
                                                   RollerStateValueUpdateService rollerStateValueUpdateService,
                                                   RollerPositionValueUpdateService rollerPositionValueUpdateService,
-                                                  PowerValueUpdateService powerValueUpdateService
+                                                  PowerValueUpdateService powerValueUpdateService,
+                                                  ShellyValueFilter shellyValueFilter,
+                                                  ShellyOptimisticStates shellyOptimisticStates,
+                                                  ShellyPowerAggregator shellyPowerAggregator,
+                                                  ShellyPropertyHandleRegistry shellyPropertyHandleRegistry
   ) {
-    return new Shelly2MessageProcessor(relayStateValueUpdateService, rollerStateValueUpdateService, rollerPositionValueUpdateService, powerValueUpdateService);
+    return new Shelly2MessageProcessor(relayStateValueUpdateService, rollerStateValueUpdateService, rollerPositionValueUpdateService, powerValueUpdateService, shellyOptimisticStates.observe(shellyValueFilter), shellyPowerAggregator, shellyPropertyHandleRegistry);
   }
 
   @Bean
@@ -78,9 +208,13 @@ public class HomeAutomationShellyDeviceMessageProcessorAutoConfiguration {
   Shelly25MessageProcessor shelly25MessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService,
                                                     RollerStateValueUpdateService rollerStateValueUpdateService,
                                                     RollerPositionValueUpdateService rollerPositionValueUpdateService,
-                                                    PowerValueUpdateService powerValueUpdateService
+                                                    PowerValueUpdateService powerValueUpdateService,
+                                                    ShellyValueFilter shellyValueFilter,
+                                                    ShellyOptimisticStates shellyOptimisticStates,
+                                                    ShellyPowerAggregator shellyPowerAggregator,
+                                                    ShellyPropertyHandleRegistry shellyPropertyHandleRegistry
   ) {
-    return new Shelly25MessageProcessor(relayStateValueUpdateService, rollerStateValueUpdateService, rollerPositionValueUpdateService, powerValueUpdateService);
+    return new Shelly25MessageProcessor(relayStateValueUpdateService, rollerStateValueUpdateService, rollerPositionValueUpdateService, powerValueUpdateService, shellyOptimisticStates.observe(shellyValueFilter), shellyPowerAggregator, shellyPropertyHandleRegistry);
   }
 
   @Bean
@@ -88,29 +222,26 @@ public class HomeAutomationShellyDeviceMessageProcessorAutoConfiguration {
   @ConditionalOnBean({RelayStateValueUpdateService.class, DimmingLevelValueUpdateService.class, ObjectMapper.class})
   ShellyDimmerMessageProcessor shellyDimmerMessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService,
                                                             DimmingLevelValueUpdateService dimmingLevelValueUpdateService,
-                                                            ObjectMapper objectMapper
+                                                            ObjectMapper objectMapper,
+                                                            ShellyValueFilter shellyValueFilter,
+                                                            ShellyOptimisticStates shellyOptimisticStates,
+                                                            ShellyPropertyHandleRegistry shellyPropertyHandleRegistry
   ) {
-    return new ShellyDimmerMessageProcessor(relayStateValueUpdateService, dimmingLevelValueUpdateService, objectMapper);
+    return new ShellyDimmerMessageProcessor(relayStateValueUpdateService, dimmingLevelValueUpdateService, objectMapper, shellyOptimisticStates.observe(shellyValueFilter), shellyPropertyHandleRegistry);
   }
 
   @Bean
-  @ConditionalOnMissingBean
+  @SuppressWarnings("deprecation")
+  @ConditionalOnMissingBean(value = ShellyDoorWindowMessageProcessor.class, ignored = ShellyDoorWindow2MessageProcessor.class)
   @ConditionalOnBean({WindowStateValueUpdateService.class, WindowTiltAngleValueUpdateService.class, BatteryLevelUpdateService.class})
   ShellyDoorWindowMessageProcessor shellyDoorWindowMessageProcessor(WindowStateValueUpdateService windowStateValueUpdateService,
                                                                     WindowTiltAngleValueUpdateService windowTiltAngleValueUpdateService,
-                                                                    BatteryLevelUpdateService batteryLevelUpdateService
-  ) {
-    return new ShellyDoorWindowMessageProcessor(windowStateValueUpdateService, windowTiltAngleValueUpdateService, batteryLevelUpdateService);
-  }
-
-  @Bean
-  @ConditionalOnMissingBean
-  @ConditionalOnBean({WindowStateValueUpdateService.class, WindowTiltAngleValueUpdateService.class, BatteryLevelUpdateService.class})
-  ShellyDoorWindow2MessageProcessor shellyDoorWindow2MessageProcessor(WindowStateValueUpdateService windowStateValueUpdateService,
-                                                                      WindowTiltAngleValueUpdateService windowTiltAngleValueUpdateService,
-                                                                      BatteryLevelUpdateService batteryLevelUpdateService
+                                                                    BatteryLevelUpdateService batteryLevelUpdateService,
+                                                                    ShellyValueFilter shellyValueFilter,
+                                                                    ShellyFrameAssembler shellyFrameAssembler,
+                                                                    ShellyPropertyHandleRegistry shellyPropertyHandleRegistry
   ) {
-    return new ShellyDoorWindow2MessageProcessor(windowStateValueUpdateService, windowTiltAngleValueUpdateService, batteryLevelUpdateService);
+    return new ShellyDoorWindowMessageProcessor(windowStateValueUpdateService, windowTiltAngleValueUpdateService, batteryLevelUpdateService, shellyValueFilter, shellyFrameAssembler, shellyPropertyHandleRegistry);
   }
 
   @Bean
@@ -118,8 +249,11 @@ public class HomeAutomationShellyDeviceMessageProcessorAutoConfiguration {
   @ConditionalOnBean({TemperatureValueUpdateService.class, HumidityValueUpdateService.class, BatteryLevelUpdateService.class})
   ShellyHtMessageProcessor shellyHtMessageProcessor(TemperatureValueUpdateService temperatureValueUpdateService,
                                                     HumidityValueUpdateService humidityValueUpdateService,
-                                                    BatteryLevelUpdateService batteryLevelUpdateService
+                                                    BatteryLevelUpdateService batteryLevelUpdateService,
+                                                    ShellyValueFilter shellyValueFilter,
+                                                    ShellyFrameAssembler shellyFrameAssembler,
+                                                    ShellyPropertyHandleRegistry shellyPropertyHandleRegistry
   ) {
-    return new ShellyHtMessageProcessor(temperatureValueUpdateService, humidityValueUpdateService, batteryLevelUpdateService);
+    return new ShellyHtMessageProcessor(temperatureValueUpdateService, humidityValueUpdateService, batteryLevelUpdateService, shellyValueFilter, shellyFrameAssembler, shellyPropertyHandleRegistry);
   }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the {@link ShellyMetrics} events as Micrometer meters. Meters are tagged with the device type, the device
+ * property type and the controller and command, never with device ids, and are created once per tag combination.
+ */
+public class MicrometerShellyMetrics implements ShellyMetrics {
+
+  static final String MESSAGES_RECEIVED = "shelly.messages.received";
+  static final String MESSAGES_PROCESSING = "shelly.messages.processing";
+  static final String PAYLOADS_FAILED = "shelly.payloads.failed";
+  static final String TOPICS_UNPARSEABLE = "shelly.topics.unparseable";
+  static final String TOPICS_REJECTED = "shelly.topics.rejected";
+  static final String TOPICS_UNROUTED = "shelly.topics.unrouted";
+  static final String DEVICES_CREATED = "shelly.devices.created";
+  static final String COMMANDS_PUBLISHED = "shelly.commands.published";
+
+  private final MeterRegistry meterRegistry;
+  private final Map<ShellyDeviceType, Map<String, TopicMeters>> topicMeters = new EnumMap<>(ShellyDeviceType.class);
+  private final Map<ShellyDeviceType, Counter> unroutedCounters = new EnumMap<>(ShellyDeviceType.class);
+  private final Map<ShellyDeviceType, Counter> createdCounters = new EnumMap<>(ShellyDeviceType.class);
+  private final Map<String, Counter> commandCounters = new ConcurrentHashMap<>();
+  private final Counter unparseableCounter;
+  private final Counter rejectedCounter;
+
+  public MicrometerShellyMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    for (ShellyDeviceType deviceType : ShellyDeviceType.values()) {
+      topicMeters.put(deviceType, new ConcurrentHashMap<>());
+      unroutedCounters.put(deviceType, Counter.builder(TOPICS_UNROUTED)
+          .description("Shelly messages without a processor")
+          .tag("type", deviceType.name())
+          .register(meterRegistry));
+      createdCounters.put(deviceType, Counter.builder(DEVICES_CREATED)
+          .description("Shelly devices created on their first message")
+          .tag("type", deviceType.name())
+          .register(meterRegistry));
+    }
+    unparseableCounter = Counter.builder(TOPICS_UNPARSEABLE)
+        .description("Messages below the Shelly root topic without a device id")
+        .register(meterRegistry);
+    rejectedCounter = Counter.builder(TOPICS_REJECTED)
+        .description("Command echoes and messages of unsupported devices rejected before parsing")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public void messageReceived(ShellyTopic topic) {
+    metersOf(topic).received.increment();
+  }
+
+  @Override
+  public void messageProcessed(ShellyTopic topic, long durationNanos) {
+    metersOf(topic).processing.record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void payloadFailed(ShellyTopic topic) {
+    metersOf(topic).failed.increment();
+  }
+
+  @Override
+  public void topicUnparseable() {
+    unparseableCounter.increment();
+  }
+
+  @Override
+  public void topicRejected() {
+    rejectedCounter.increment();
+  }
+
+  @Override
+  public void topicUnrouted(ShellyDeviceType deviceType) {
+    unroutedCounters.get(deviceType).increment();
+  }
+
+  @Override
+  public void deviceCreated(ShellyDeviceType deviceType) {
+    createdCounters.get(deviceType).increment();
+  }
+
+  @Override
+  public void commandPublished(String controller, String command) {
+    commandCounters.computeIfAbsent(controller + '/' + command, key -> Counter.builder(COMMANDS_PUBLISHED)
+        .description("Commands published to Shelly devices")
+        .tag("controller", controller)
+        .tag("command", command)
+        .register(meterRegistry)).increment();
+  }
+
+  private TopicMeters metersOf(ShellyTopic topic) {
+    Map<String, TopicMeters> metersByPropertyType = topicMeters.get(topic.deviceType());
+    TopicMeters meters = metersByPropertyType.get(topic.devicePropertyType());
+    if (meters == null) {
+      meters = metersByPropertyType.computeIfAbsent(topic.devicePropertyType(), propertyType -> new TopicMeters(topic.deviceType(), propertyType));
+    }
+    return meters;
+  }
+
+  private final class TopicMeters {
+    private final Counter received;
+    private final Timer processing;
+    private final Counter failed;
+
+    private TopicMeters(ShellyDeviceType deviceType, String propertyType) {
+      received = Counter.builder(MESSAGES_RECEIVED)
+          .description("Messages received from Shelly devices")
+          .tag("type", deviceType.name())
+          .tag("property", propertyType)
+          .register(meterRegistry);
+      processing = Timer.builder(MESSAGES_PROCESSING)
+          .description("Time to process a message from a Shelly device")
+          .tag("type", deviceType.name())
+          .tag("property", propertyType)
+          .register(meterRegistry);
+      failed = Counter.builder(PAYLOADS_FAILED)
+          .description("Messages from Shelly devices whose payload could not be processed")
+          .tag("type", deviceType.name())
+          .tag("property", propertyType)
+          .register(meterRegistry);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.ROOT_TOPIC;
+import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.endOfDeviceType;
+
+/**
+ * Rejects the echoes of the commands published by the property controllers ({@code .../command}, {@code .../command/pos},
+ * {@code .../set} and {@code shellies/<device>/rpc}), the responses to RPCs ({@code shellies/<device>/rpc/response/...})
+ * and the topics of device types without a {@link ShellyDeviceType}.
+ * The type prefix is split off the device level like {@link ShellyTopicFactory#parseTopic(String)} does and matched
+ * against the device types without copying it. The prefixes of unsupported devices are kept in a
+ * {@link ShellyBoundedCache}, and each of them is logged at most once per log interval.
+ */
+public class RejectingShellyTopicPreFilter implements ShellyTopicPreFilter {
+
+  private static final Logger log = LoggerFactory.getLogger(RejectingShellyTopicPreFilter.class);
+  private static final String COMMAND_SUFFIX = "/command";
+  private static final String POSITION_COMMAND_SUFFIX = "/command/pos";
+  private static final String SET_SUFFIX = "/set";
+  private static final String RPC_SUFFIX = "/rpc";
+  private static final String RPC_RESPONSE = "/rpc/response";
+
+  private final Clock clock;
+  private final long logIntervalMillis;
+  private final ShellyBoundedCache<String, UnsupportedDeviceType> unsupportedDeviceTypes;
+  private final LongAdder echoCount = new LongAdder();
+  private final LongAdder unsupportedCount = new LongAdder();
+
+  public RejectingShellyTopicPreFilter(int maximumSize, Duration logInterval) {
+    this(maximumSize, logInterval, Clock.systemUTC());
+  }
+
+  public RejectingShellyTopicPreFilter(int maximumSize, Duration logInterval, Clock clock) {
+    unsupportedDeviceTypes = new ShellyBoundedCache<>(maximumSize);
+    this.clock = clock;
+    logIntervalMillis = logInterval.toMillis();
+  }
+
+  @Override
+  public boolean accept(String topic) {
+    if (!topic.startsWith(ROOT_TOPIC)) {
+      return true;
+    }
+    int deviceStart = ROOT_TOPIC.length();
+    int deviceEnd = topic.indexOf('/', deviceStart);
+    if (deviceEnd < 0) {
+      return true;
+    }
+    if (isEcho(topic, deviceEnd)) {
+      echoCount.increment();
+      return false;
+    }
+    int typeEnd = endOfDeviceType(topic, deviceStart);
+    if (typeEnd < 0 || ShellyDeviceType.getByTypeTopicPrefix(topic, deviceStart, typeEnd).isPresent()) {
+      return true;
+    }
+    String typePrefix = topic.substring(deviceStart, typeEnd);
+    UnsupportedDeviceType unsupported = unsupportedDeviceTypes.computeIfAbsent(typePrefix,
+        prefix -> new UnsupportedDeviceType(clock.millis() - logIntervalMillis));
+    unsupportedCount.increment();
+    unsupported.reject(typePrefix, clock.millis());
+    return false;
+  }
+
+  public int size() {
+    return unsupportedDeviceTypes.size();
+  }
+
+  public long getEchoCount() {
+    return echoCount.sum();
+  }
+
+  public long getUnsupportedCount() {
+    return unsupportedCount.sum();
+  }
+
+  private static boolean isEcho(String topic, int deviceEnd) {
+    return topic.endsWith(COMMAND_SUFFIX)
+        || topic.endsWith(POSITION_COMMAND_SUFFIX)
+        || topic.endsWith(SET_SUFFIX)
+        || (topic.length() == deviceEnd + RPC_SUFFIX.length() && topic.endsWith(RPC_SUFFIX))
+        || topic.startsWith(RPC_RESPONSE, deviceEnd);
+  }
+
+  private final class UnsupportedDeviceType {
+    private final AtomicLong loggedAt;
+    private final LongAdder suppressed = new LongAdder();
+
+    private UnsupportedDeviceType(long loggedAt) {
+      this.loggedAt = new AtomicLong(loggedAt);
+    }
+
+    private void reject(String typePrefix, long now) {
+      long last = loggedAt.get();
+      if (now - last < logIntervalMillis || !loggedAt.compareAndSet(last, now)) {
+        suppressed.increment();
+        return;
+      }
+      log.info("ignoring messages of unsupported device type {} ({} more since the last report)", typePrefix, suppressed.sumThenReset());
+    }
+  }
+}
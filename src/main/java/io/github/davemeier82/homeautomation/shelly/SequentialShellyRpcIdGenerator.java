@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SequentialShellyRpcIdGenerator implements ShellyRpcIdGenerator {
+
+  private final String prefix;
+  private final AtomicLong counter = new AtomicLong();
+
+  public SequentialShellyRpcIdGenerator() {
+    this(Integer.toHexString(ThreadLocalRandom.current().nextInt()));
+  }
+
+  public SequentialShellyRpcIdGenerator(String nodePrefix) {
+    this.prefix = nodePrefix + "-";
+  }
+
+  @Override
+  public String nextId() {
+    return prefix + counter.incrementAndGet();
+  }
+}
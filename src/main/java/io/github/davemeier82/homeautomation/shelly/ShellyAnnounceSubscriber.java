@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.device.mqtt.MqttSubscriber;
+import io.github.davemeier82.homeautomation.core.mqtt.MqttClient;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.ROOT_TOPIC;
+
+/**
+ * Registers devices when they announce themselves, so that their first state message does not have to create them.
+ * After the start delay all Gen1 devices are asked to announce themselves. Announcements are collected for the batch
+ * delay and then registered together on a separate thread, instead of one by one on the thread of the MQTT client.
+ */
+public class ShellyAnnounceSubscriber implements MqttSubscriber, AutoCloseable {
+
+  public static final String ANNOUNCE_TOPIC = ROOT_TOPIC + "announce";
+  public static final String COMMAND_TOPIC = ROOT_TOPIC + "command";
+
+  private static final Logger log = LoggerFactory.getLogger(ShellyAnnounceSubscriber.class);
+
+  private final ShellyDeviceRegistry shellyDeviceRegistry;
+  private final MqttClient mqttClient;
+  private final ObjectMapper objectMapper;
+  private final Duration startDelay;
+  private final long batchDelayNanos;
+  private final ScheduledExecutorService executor;
+  private final boolean ownsExecutor;
+  private final Set<DeviceId> announced = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean batchScheduled = new AtomicBoolean();
+
+  public ShellyAnnounceSubscriber(ShellyDeviceRegistry shellyDeviceRegistry, MqttClient mqttClient, ObjectMapper objectMapper, Duration startDelay, Duration batchDelay) {
+    this(shellyDeviceRegistry, mqttClient, objectMapper, startDelay, batchDelay, Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "shelly-announce");
+      thread.setDaemon(true);
+      return thread;
+    }), true);
+  }
+
+  public ShellyAnnounceSubscriber(ShellyDeviceRegistry shellyDeviceRegistry,
+                                  MqttClient mqttClient,
+                                  ObjectMapper objectMapper,
+                                  Duration startDelay,
+                                  Duration batchDelay,
+                                  ScheduledExecutorService executor
+  ) {
+    this(shellyDeviceRegistry, mqttClient, objectMapper, startDelay, batchDelay, executor, false);
+  }
+
+  private ShellyAnnounceSubscriber(ShellyDeviceRegistry shellyDeviceRegistry,
+                                   MqttClient mqttClient,
+                                   ObjectMapper objectMapper,
+                                   Duration startDelay,
+                                   Duration batchDelay,
+                                   ScheduledExecutorService executor,
+                                   boolean ownsExecutor
+  ) {
+    this.shellyDeviceRegistry = shellyDeviceRegistry;
+    this.mqttClient = mqttClient;
+    this.objectMapper = objectMapper;
+    this.startDelay = startDelay;
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+    batchDelayNanos = batchDelay.toNanos();
+  }
+
+  @Override
+  public String getTopic() {
+    return ANNOUNCE_TOPIC;
+  }
+
+  /**
+   * Asks the devices to announce themselves once the start delay has passed, which gives the MQTT client time to
+   * connect and subscribe.
+   */
+  public void start() {
+    executor.schedule(this::requestAnnouncements, startDelay.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void processMessage(String topic, Optional<ByteBuffer> payload) {
+    payload.flatMap(this::readDeviceId).ifPresent(deviceId -> {
+      if (!shellyDeviceRegistry.isKnown(deviceId) && announced.add(deviceId) && batchScheduled.compareAndSet(false, true)) {
+        executor.schedule(this::registerAnnounced, batchDelayNanos, TimeUnit.NANOSECONDS);
+      }
+    });
+  }
+
+  public int getPendingCount() {
+    return announced.size();
+  }
+
+  @Override
+  public void close() {
+    if (ownsExecutor) {
+      executor.shutdownNow();
+    }
+  }
+
+  private void requestAnnouncements() {
+    try {
+      mqttClient.publish(COMMAND_TOPIC, "announce");
+    } catch (RuntimeException e) {
+      log.warn("failed to ask the devices to announce themselves", e);
+    }
+  }
+
+  private void registerAnnounced() {
+    batchScheduled.set(false);
+    int registered = 0;
+    for (Iterator<DeviceId> iterator = announced.iterator(); iterator.hasNext(); ) {
+      DeviceId deviceId = iterator.next();
+      iterator.remove();
+      try {
+        shellyDeviceRegistry.getOrCreate(deviceId);
+        registered++;
+      } catch (RuntimeException e) {
+        log.error("failed to register announced device {}", deviceId, e);
+      }
+    }
+    log.debug("registered {} announced devices", registered);
+  }
+
+  private Optional<DeviceId> readDeviceId(ByteBuffer payload) {
+    try {
+      JsonNode announcement = objectMapper.readTree(new ByteBufferBackedInputStream(payload.duplicate()));
+      return Optional.ofNullable(announcement.path("id").asText(null)).flatMap(ShellyTopicFactory::parseDeviceId);
+    } catch (IOException e) {
+      log.warn("failed to read announcement", e);
+      return Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A concurrent cache with a fixed maximum size that evicts one entry at a time with the CLOCK (second chance)
+ * approximation of LRU. Hits are lock-free and only mark their entry as referenced; adding an entry to a full cache
+ * advances a clock hand over the entries, clears their reference marks and evicts the first entry that was not
+ * referenced since the hand last passed it. Keys and values must not be {@code null}.
+ */
+public final class ShellyBoundedCache<K, V> {
+
+  private final int maximumSize;
+  private final Map<K, Entry<K, V>> entries;
+  private final Entry<K, V>[] ring;
+  private final LongAdder evictionCount = new LongAdder();
+  private int hand;
+
+  @SuppressWarnings("unchecked")
+  public ShellyBoundedCache(int maximumSize) {
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException("maximumSize must be positive but was " + maximumSize);
+    }
+    this.maximumSize = maximumSize;
+    entries = new ConcurrentHashMap<>(Math.min(maximumSize, 1024));
+    ring = new Entry[maximumSize];
+  }
+
+  /**
+   * @return the cached value or {@code null}
+   */
+  public V get(K key) {
+    Entry<K, V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (!entry.referenced) {
+      entry.referenced = true;
+    }
+    return entry.value;
+  }
+
+  /**
+   * Returns the cached value or loads and adds it. The loader runs outside any lock and may run more than once for a
+   * key that is loaded concurrently, in which case the first added value wins.
+   */
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+    V cached = get(key);
+    if (cached != null) {
+      return cached;
+    }
+    return putIfAbsent(key, loader.apply(key));
+  }
+
+  /**
+   * Adds the value unless the key is cached already, evicting one entry if the cache is full.
+   *
+   * @return the cached value, which is the given value unless the key was cached already
+   */
+  public synchronized V putIfAbsent(K key, V value) {
+    Entry<K, V> existing = entries.get(key);
+    if (existing != null) {
+      return existing.value;
+    }
+    Entry<K, V> candidate;
+    while ((candidate = ring[hand]) != null) {
+      if (!candidate.referenced) {
+        entries.remove(candidate.key);
+        evictionCount.increment();
+        break;
+      }
+      candidate.referenced = false;
+      advanceHand();
+    }
+    Entry<K, V> entry = new Entry<>(key, value);
+    ring[hand] = entry;
+    advanceHand();
+    entries.put(key, entry);
+    return value;
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    Arrays.fill(ring, null);
+    hand = 0;
+  }
+
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the number of entries evicted to make room for new ones, not counting {@link #clear()}
+   */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  private void advanceHand() {
+    hand = hand + 1 == maximumSize ? 0 : hand + 1;
+  }
+
+  private static final class Entry<K, V> {
+    private final K key;
+    private final V value;
+    private volatile boolean referenced;
+
+    private Entry(K key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+}
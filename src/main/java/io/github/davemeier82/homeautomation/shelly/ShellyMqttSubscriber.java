@@ -16,18 +16,21 @@
 
 package io.github.davemeier82.homeautomation.shelly;
 
-import io.github.davemeier82.homeautomation.core.device.Device;
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
 import io.github.davemeier82.homeautomation.core.device.mqtt.MqttSubscriber;
 import io.github.davemeier82.homeautomation.core.repositories.DeviceRepository;
 import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceFactory;
-import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceRegistry;
 import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyDeviceMessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageHandler;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRouter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -36,39 +39,102 @@ import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.*;
 public class ShellyMqttSubscriber implements MqttSubscriber {
 
   private static final Logger log = LoggerFactory.getLogger(ShellyMqttSubscriber.class);
-  private final ShellyDeviceFactory shellyDeviceFactory;
-  private final DeviceRepository deviceRepository;
+  private final ShellyDeviceRegistry shellyDeviceRegistry;
+  private final ShellyTopicParser shellyTopicParser;
 
-  private final Map<ShellyDeviceType, ShellyDeviceMessageProcessor> messageProcessorByType = new HashMap<>();
+  private final ShellyMessageRouter messageRouter;
+  private final ShellyMessageDispatcher messageDispatcher;
+  private final Clock clock;
+  private final ShellyMetrics metrics;
+  private final boolean timed;
+  private final List<String> topicFilters;
+  private final ShellyTopicPreFilter topicPreFilter;
 
 
   public ShellyMqttSubscriber(ShellyDeviceFactory shellyDeviceFactory, DeviceRepository deviceRepository, Set<ShellyDeviceMessageProcessor> shellyDeviceMessageProcessors) {
-    this.shellyDeviceFactory = shellyDeviceFactory;
-    this.deviceRepository = deviceRepository;
-    shellyDeviceMessageProcessors.forEach(processor -> processor.getSupportedDeviceTypes().forEach(type -> messageProcessorByType.put(type, processor)));
+    this(new ShellyDeviceRegistry(shellyDeviceFactory, deviceRepository), shellyDeviceMessageProcessors, ShellyTopicFactory::parseTopic, ShellyMessageDispatcher.DIRECT,
+        Clock.systemDefaultZone(), ShellyMetrics.NONE, ShellyTopicSubscriptions.ALL, ShellyTopicPreFilter.NONE);
+  }
+
+  /**
+   * @param topicSubscriptions selects the topic filters subscribed to. The subscriber itself covers the first one, the
+   *                           others need a {@link ShellyTopicSubscription} each.
+   */
+  public ShellyMqttSubscriber(ShellyDeviceRegistry shellyDeviceRegistry,
+                              Set<ShellyDeviceMessageProcessor> shellyDeviceMessageProcessors,
+                              ShellyTopicParser shellyTopicParser,
+                              ShellyMessageDispatcher messageDispatcher,
+                              Clock clock,
+                              ShellyMetrics metrics,
+                              ShellyTopicSubscriptions topicSubscriptions,
+                              ShellyTopicPreFilter topicPreFilter
+  ) {
+    this.shellyDeviceRegistry = shellyDeviceRegistry;
+    this.shellyTopicParser = shellyTopicParser;
+    this.messageDispatcher = messageDispatcher;
+    this.clock = clock;
+    this.metrics = metrics;
+    this.topicPreFilter = topicPreFilter;
+    timed = metrics != ShellyMetrics.NONE;
+    messageRouter = new ShellyMessageRouter(shellyDeviceMessageProcessors);
+    topicFilters = topicSubscriptions.topicFilters(messageRouter.getRoutes());
   }
 
   @Override
   public String getTopic() {
-    return ROOT_TOPIC + "#";
+    return topicFilters.get(0);
+  }
+
+  /**
+   * @return the topic filters other than {@link #getTopic()}, which need a {@link ShellyTopicSubscription} each
+   */
+  public List<String> getAdditionalTopicFilters() {
+    return topicFilters.subList(1, topicFilters.size());
   }
 
   @Override
   public void processMessage(String topic, Optional<ByteBuffer> payload) {
-    deviceIdFromTopic(topic).ifPresentOrElse(deviceId -> {
-      deviceRepository.getByDeviceId(deviceId).orElseGet(() -> {
-        Device newDevice = shellyDeviceFactory.createDevice(deviceId.type(), deviceId.id(), deviceId.toString(), Map.of(), Map.of()).orElseThrow();
-        deviceRepository.save(newDevice);
-        return newDevice;
-      });
-      String devicePropertyType = ShellyTopicFactory.devicePropertyType(topic).orElseThrow();
-      ShellyDeviceMessageProcessor shellyDeviceMessageProcessor = messageProcessorByType.get((ShellyDeviceType) deviceId.type());
-      if (shellyDeviceMessageProcessor == null) {
-        log.error("no processor found for deviceId={} and topic={}", deviceId, topic);
-      } else {
-        shellyDeviceMessageProcessor.processMessage(subTopicOf(topic).orElse(null), payload, deviceId, devicePropertyType);
+    if (!topicPreFilter.accept(topic)) {
+      metrics.topicRejected();
+      return;
+    }
+    shellyTopicParser.parseTopic(topic).ifPresentOrElse(shellyTopic -> {
+      DeviceId deviceId = shellyTopic.deviceId();
+      ShellyMessageHandler handler = messageRouter.findHandler(shellyTopic);
+      if (handler == null) {
+        metrics.topicUnrouted(shellyTopic.deviceType());
+        if (messageRouter.supportsDeviceType(shellyTopic.deviceType())) {
+          log.debug("no route found for deviceId={} and topic={}", deviceId, topic);
+        } else {
+          log.error("no processor found for deviceId={} and topic={}", deviceId, topic);
+        }
+        // devices are registered on any of their topics, even those without a route, the payload is not needed for that
+        messageDispatcher.dispatch(shellyTopic, Optional.empty(), (routedTopic, routedPayload) -> shellyDeviceRegistry.getOrCreate(routedTopic.deviceId()));
+        return;
       }
-    }, () -> log.info("No devicePropertyId found in topic: {}", topic));
+      metrics.messageReceived(shellyTopic);
+      OffsetDateTime receivedAt = OffsetDateTime.now(clock);
+      messageDispatcher.dispatch(shellyTopic, payload, (routedTopic, routedPayload) -> {
+        long start = timed ? System.nanoTime() : 0;
+        shellyDeviceRegistry.getOrCreate(routedTopic.deviceId());
+        routedPayload.ifPresent(byteBuffer -> handle(handler, routedTopic, byteBuffer, receivedAt));
+        if (timed) {
+          metrics.messageProcessed(routedTopic, System.nanoTime() - start);
+        }
+      });
+    }, () -> {
+      metrics.topicUnparseable();
+      log.info("No devicePropertyId found in topic: {}", topic);
+    });
+
+  }
 
+  private void handle(ShellyMessageHandler handler, ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    try {
+      handler.handle(topic, payload, receivedAt);
+    } catch (RuntimeException e) {
+      metrics.payloadFailed(topic);
+      log.error("failed to process message of deviceId={}", topic.deviceId(), e);
+    }
   }
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.davemeier82.homeautomation.shelly;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Matches the responses of Gen2 devices to the RPCs that were sent to them.
+ */
+@FunctionalInterface
+public interface ShellyRpcCorrelator {
+
+  /**
+   * Does not wait for responses, the returned futures are completed with {@code null} at once.
+   */
+  ShellyRpcCorrelator NONE = (id, timeout) -> CompletableFuture.completedFuture(null);
+
+  /**
+   * Registers an RPC before it is published.
+   *
+   * @return completes with the response, exceptionally with a {@link ShellyRpcException} if the device returned an error
+   * or with a {@link java.util.concurrent.TimeoutException} if no response arrived within the timeout. Cancelling it
+   * stops waiting for the response.
+   */
+  CompletableFuture<ShellyRpcResponse> expect(String id, Duration timeout);
+}
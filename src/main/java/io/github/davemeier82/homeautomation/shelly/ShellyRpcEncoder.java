@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+public final class ShellyRpcEncoder {
+
+  private static final String SWITCH_SET_METHOD = "Switch.Set";
+
+  private ShellyRpcEncoder() {
+  }
+
+  public static String encodeSwitchSet(String id, String src, int switchId, boolean on) {
+    StringBuilder json = new StringBuilder(80 + id.length() + src.length());
+    json.append("{\"id\":");
+    appendString(json, id);
+    json.append(",\"src\":");
+    appendString(json, src);
+    json.append(",\"method\":\"").append(SWITCH_SET_METHOD).append("\",\"params\":{\"id\":").append(switchId).append(",\"on\":").append(on).append("}}");
+    return json.toString();
+  }
+
+  private static void appendString(StringBuilder json, String value) {
+    json.append('"');
+    if (needsEscaping(value)) {
+      json.append(JsonStringEncoder.getInstance().quoteAsString(value));
+    } else {
+      json.append(value);
+    }
+    json.append('"');
+  }
+
+  private static boolean needsEscaping(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x20 || c == '"' || c == '\\') {
+        return true;
+      }
+    }
+    return false;
+  }
+}
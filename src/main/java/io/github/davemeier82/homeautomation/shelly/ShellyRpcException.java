@@ -0,0 +1,33 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.davemeier82.homeautomation.shelly;
+
+/**
+ * Error response of a Gen2 device to an RPC.
+ */
+public class ShellyRpcException extends RuntimeException {
+
+  private final int code;
+
+  public ShellyRpcException(String id, int code, String message) {
+    super("RPC " + id + " failed with code " + code + ": " + message);
+    this.code = code;
+  }
+
+  public int getCode() {
+    return code;
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the method, the timestamp and the output of one component from a Gen2 RPC notification, e.g.
+ * <pre>{"src":"...","dst":"...","method":"NotifyStatus","params":{"ts":1716544800.12,"switch:0":{"id":0,"output":true}}}</pre>
+ * All other values are skipped without being materialized.
+ */
+public class ShellyRpcNotificationDecoder {
+
+  private final JsonFactory jsonFactory;
+
+  public ShellyRpcNotificationDecoder(JsonFactory jsonFactory) {
+    this.jsonFactory = jsonFactory;
+  }
+
+  public ShellyRpcNotification decode(ByteBuffer payload, String component) throws IOException {
+    String method = null;
+    double timestamp = Double.NaN;
+    Boolean output = null;
+    try (JsonParser parser = createParser(payload)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return new ShellyRpcNotification(null, timestamp, null);
+      }
+      String fieldName;
+      while ((fieldName = parser.nextFieldName()) != null) {
+        JsonToken token = parser.nextToken();
+        if ("method".equals(fieldName)) {
+          method = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+        } else if ("params".equals(fieldName) && token == JsonToken.START_OBJECT) {
+          String paramName;
+          while ((paramName = parser.nextFieldName()) != null) {
+            JsonToken paramToken = parser.nextToken();
+            if ("ts".equals(paramName) && paramToken.isNumeric()) {
+              timestamp = parser.getDoubleValue();
+            } else if (component.equals(paramName) && paramToken == JsonToken.START_OBJECT) {
+              output = readOutput(parser);
+            } else {
+              parser.skipChildren();
+            }
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return new ShellyRpcNotification(method, timestamp, output);
+  }
+
+  private static Boolean readOutput(JsonParser parser) throws IOException {
+    Boolean output = null;
+    String fieldName;
+    while ((fieldName = parser.nextFieldName()) != null) {
+      JsonToken token = parser.nextToken();
+      if ("output".equals(fieldName) && token.isBoolean()) {
+        output = token == JsonToken.VALUE_TRUE;
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return output;
+  }
+
+  private JsonParser createParser(ByteBuffer payload) throws IOException {
+    if (payload.hasArray()) {
+      return jsonFactory.createParser(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+    }
+    return jsonFactory.createParser(new ByteBufferBackedInputStream(payload.duplicate()));
+  }
+}
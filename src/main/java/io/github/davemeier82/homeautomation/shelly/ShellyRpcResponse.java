@@ -0,0 +1,24 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.davemeier82.homeautomation.shelly;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Successful response of a Gen2 device to an RPC, e.g. {@code {"id":"a1-7","src":"shelly1minig3-...","result":{"was_on":false}}}.
+ */
+public record ShellyRpcResponse(String id, String src, JsonNode result) {
+}
@@ -22,28 +22,81 @@ import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
 import org.springframework.util.StringUtils;
 
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.getByTypeTopicPrefix;
 
 public final class ShellyTopicFactory {
 
   public static final String ROOT_TOPIC = "shellies/";
-  private static final Pattern DEVICE_ID_PATTERN = Pattern.compile("^" + ROOT_TOPIC + "(\\w*)-(\\w*)/");
-  private static final Pattern DEVICE_TYPE_PATTERN = Pattern.compile(DEVICE_ID_PATTERN + "(\\w*)/");
-  private static final Pattern SUBTOPIC_PATTERN_WITHOUT_INDEX = Pattern.compile(DEVICE_TYPE_PATTERN + "(\\S*)");
-  private static final Pattern RPC_EVENT_PATTERN = Pattern.compile(DEVICE_ID_PATTERN + "events/rpc/?(\\w*)");
+  private static final String RPC_EVENT_TOPIC = "events/rpc";
 
   private ShellyTopicFactory() {
   }
 
-  public static Optional<DeviceId> deviceIdFromTopic(String topic) {
-    Matcher matcher = DEVICE_TYPE_PATTERN.matcher(topic);
-    if (matcher.find()) {
-      return getByTypeTopicPrefix(matcher.group(1)).map(type -> new DeviceId(matcher.group(2), type));
+  public static Optional<ShellyTopic> parseTopic(String topic) {
+    if (topic == null || !topic.startsWith(ROOT_TOPIC)) {
+      return Optional.empty();
     }
-    return Optional.empty();
+    int typeStart = ROOT_TOPIC.length();
+    int typeEnd = endOfDeviceType(topic, typeStart);
+    if (typeEnd < 0) {
+      return Optional.empty();
+    }
+    int idStart = typeEnd + 1;
+    int idEnd = endOfWord(topic, idStart);
+    if (!hasCharAt(topic, idEnd, '/')) {
+      return Optional.empty();
+    }
+    int propertyTypeStart = idEnd + 1;
+    int propertyTypeEnd = endOfWord(topic, propertyTypeStart);
+    if (!hasCharAt(topic, propertyTypeEnd, '/')) {
+      return Optional.empty();
+    }
+    ShellyDeviceType type = getByTypeTopicPrefix(topic, typeStart, typeEnd).orElse(null);
+    if (type == null) {
+      return Optional.empty();
+    }
+    DeviceId deviceId = new DeviceId(topic.substring(idStart, idEnd), type);
+    String devicePropertyType = topic.substring(propertyTypeStart, propertyTypeEnd);
+    if (topic.startsWith(RPC_EVENT_TOPIC, propertyTypeStart)) {
+      int subTopicStart = propertyTypeStart + RPC_EVENT_TOPIC.length();
+      if (hasCharAt(topic, subTopicStart, '/')) {
+        subTopicStart++;
+      }
+      String subTopic = topic.substring(subTopicStart, endOfWord(topic, subTopicStart));
+      return Optional.of(new ShellyTopic(type, deviceId, devicePropertyType, subTopic, true));
+    }
+    return Optional.of(new ShellyTopic(type, deviceId, devicePropertyType, topic.substring(propertyTypeEnd + 1), false));
+  }
+
+  /**
+   * Parses the device level of a topic, e.g. {@code shellyswitch25-98CDAC1F2A3B}, which is also the id in an announcement.
+   */
+  public static Optional<DeviceId> parseDeviceId(String deviceTopicLevel) {
+    int typeEnd = endOfDeviceType(deviceTopicLevel, 0);
+    if (typeEnd < 0) {
+      return Optional.empty();
+    }
+    int idStart = typeEnd + 1;
+    if (idStart == deviceTopicLevel.length() || endOfWord(deviceTopicLevel, idStart) != deviceTopicLevel.length()) {
+      return Optional.empty();
+    }
+    return getByTypeTopicPrefix(deviceTopicLevel.substring(0, typeEnd)).map(type -> new DeviceId(deviceTopicLevel.substring(idStart), type));
+  }
+
+  /**
+   * Finds the {@code -} that separates the type from the id in the device level starting at {@code deviceStart}, the
+   * same way {@link #parseTopic(String)} does.
+   *
+   * @return the end of the type prefix or -1 if the device level does not start with a type followed by {@code -}
+   */
+  public static int endOfDeviceType(String topic, int deviceStart) {
+    int typeEnd = endOfWord(topic, deviceStart);
+    return hasCharAt(topic, typeEnd, '-') ? typeEnd : -1;
+  }
+
+  public static Optional<DeviceId> deviceIdFromTopic(String topic) {
+    return parseTopic(topic).map(ShellyTopic::deviceId);
   }
 
   public static Optional<String> devicePropertyIdFromSubTopic(String subTopic) {
@@ -60,23 +113,11 @@ public final class ShellyTopicFactory {
   }
 
   public static Optional<String> subTopicOf(String topic) {
-    Matcher rpcMatcher = RPC_EVENT_PATTERN.matcher(topic);
-    if (rpcMatcher.find()) {
-      return Optional.of(rpcMatcher.group(3));
-    }
-    Matcher matcher = SUBTOPIC_PATTERN_WITHOUT_INDEX.matcher(topic);
-    if (matcher.find()) {
-      return Optional.of(matcher.group(4));
-    }
-    return Optional.empty();
+    return parseTopic(topic).map(ShellyTopic::subTopic);
   }
 
   public static Optional<String> devicePropertyType(String topic) {
-    Matcher matcher = DEVICE_TYPE_PATTERN.matcher(topic);
-    if (matcher.find()) {
-      return Optional.of(matcher.group(3));
-    }
-    return Optional.empty();
+    return parseTopic(topic).map(ShellyTopic::devicePropertyType);
   }
 
   public static String createTopic(DevicePropertyId devicePropertyId, String propertyTyp) {
@@ -93,10 +134,35 @@ public final class ShellyTopicFactory {
     return createTopic(devicePropertyId, propertyTyp) + "/set";
   }
 
+  /**
+   * MQTT topic filter for the messages of a route. The device level is always a wildcard because the device type and id
+   * share one topic level.
+   */
+  public static String createTopicFilter(String devicePropertyType, String subTopicPattern) {
+    String propertyTopic = RPC_EVENT_TOPIC.startsWith(devicePropertyType + "/") ? RPC_EVENT_TOPIC : devicePropertyType;
+    return ROOT_TOPIC + "+/" + propertyTopic + (subTopicPattern.isEmpty() ? "" : "/" + subTopicPattern);
+  }
+
   public static String createRpcTopic(DevicePropertyId devicePropertyId) {
     DeviceId deviceId = devicePropertyId.deviceId();
     ShellyDeviceType type = (ShellyDeviceType) deviceId.type();
     return ROOT_TOPIC + type.getTypeTopicPrefix() + deviceId.id() + "/rpc";
   }
 
+  private static int endOfWord(String topic, int start) {
+    int index = start;
+    while (index < topic.length() && isWordCharacter(topic.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  private static boolean isWordCharacter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+  }
+
+  private static boolean hasCharAt(String topic, int index, char c) {
+    return index < topic.length() && topic.charAt(index) == c;
+  }
+
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import io.github.davemeier82.homeautomation.core.device.mqtt.MqttSubscriber;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Subscription to one more topic filter on behalf of a {@link ShellyMqttSubscriber}.
+ */
+public class ShellyTopicSubscription implements MqttSubscriber {
+
+  private final String topicFilter;
+  private final ShellyMqttSubscriber subscriber;
+
+  public ShellyTopicSubscription(String topicFilter, ShellyMqttSubscriber subscriber) {
+    this.topicFilter = topicFilter;
+    this.subscriber = subscriber;
+  }
+
+  @Override
+  public String getTopic() {
+    return topicFilter;
+  }
+
+  @Override
+  public void processMessage(String topic, Optional<ByteBuffer> payload) {
+    subscriber.processMessage(topic, payload);
+  }
+}
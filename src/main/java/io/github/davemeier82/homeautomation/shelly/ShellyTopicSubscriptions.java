@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRoute;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.ROOT_TOPIC;
+import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.createTopicFilter;
+
+/**
+ * Selects the topic filters the Shelly messages are subscribed with: either all Shelly topics, or the topics of the
+ * routes of the registered message processors plus additional topic filters.
+ *
+ * @param targeted               true to subscribe to the topics of the routes only
+ * @param additionalTopicFilters topic filters subscribed to in addition to those of the routes, e.g. for topics that
+ *                               only register devices
+ */
+public record ShellyTopicSubscriptions(boolean targeted, List<String> additionalTopicFilters) {
+
+  /**
+   * All Shelly topics.
+   */
+  public static final ShellyTopicSubscriptions ALL = new ShellyTopicSubscriptions(false, List.of());
+
+  /**
+   * The topics of the routes of the registered message processors.
+   */
+  public static final ShellyTopicSubscriptions TARGETED = new ShellyTopicSubscriptions(true, List.of());
+
+  private static final String ALL_TOPICS = ROOT_TOPIC + "#";
+
+  public ShellyTopicSubscriptions {
+    additionalTopicFilters = List.copyOf(additionalTopicFilters);
+  }
+
+  /**
+   * @return the sorted, distinct topic filters to subscribe to, at least one
+   */
+  public List<String> topicFilters(Collection<ShellyMessageRoute> routes) {
+    if (!targeted) {
+      return List.of(ALL_TOPICS);
+    }
+    TreeSet<String> topicFilters = new TreeSet<>(additionalTopicFilters);
+    routes.forEach(route -> topicFilters.add(createTopicFilter(route.devicePropertyType(), route.subTopicPattern())));
+    return topicFilters.isEmpty() ? List.of(ALL_TOPICS) : List.copyOf(topicFilters);
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Processes messages asynchronously on stripes selected by device id. Messages of the same device are processed in
+ * the order they were received, different devices run in parallel. Every stripe is drained by at most one task at
+ * a time, so any executor can be used, e.g. a virtual thread per task executor on Java 21.
+ */
+public class StripedShellyMessageDispatcher implements ShellyMessageDispatcher, AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(StripedShellyMessageDispatcher.class);
+
+  private final Stripe[] stripes;
+  private final int queueCapacity;
+  private final OverflowPolicy overflowPolicy;
+  private final Executor executor;
+  private final boolean ownsExecutor;
+  private final LongAdder droppedCount = new LongAdder();
+  private final LongAdder coalescedCount = new LongAdder();
+
+  public StripedShellyMessageDispatcher(int stripeCount, int queueCapacity, OverflowPolicy overflowPolicy) {
+    this(stripeCount, queueCapacity, overflowPolicy, Executors.newCachedThreadPool(daemonThreadFactory()), true);
+  }
+
+  public StripedShellyMessageDispatcher(int stripeCount, int queueCapacity, OverflowPolicy overflowPolicy, Executor executor) {
+    this(stripeCount, queueCapacity, overflowPolicy, executor, false);
+  }
+
+  private StripedShellyMessageDispatcher(int stripeCount, int queueCapacity, OverflowPolicy overflowPolicy, Executor executor, boolean ownsExecutor) {
+    if (stripeCount <= 0) {
+      throw new IllegalArgumentException("stripeCount must be positive but was " + stripeCount);
+    }
+    if (queueCapacity <= 0) {
+      throw new IllegalArgumentException("queueCapacity must be positive but was " + queueCapacity);
+    }
+    stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe();
+    }
+    this.queueCapacity = queueCapacity;
+    this.overflowPolicy = overflowPolicy;
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+  }
+
+  @Override
+  public void dispatch(ShellyTopic topic, Optional<ByteBuffer> payload, BiConsumer<ShellyTopic, Optional<ByteBuffer>> processor) {
+    Stripe stripe = stripes[Math.floorMod(topic.deviceId().hashCode(), stripes.length)];
+    stripe.offer(topic, payload.map(StripedShellyMessageDispatcher::copyOf), processor);
+  }
+
+  public long getDroppedCount() {
+    return droppedCount.sum();
+  }
+
+  public long getCoalescedCount() {
+    return coalescedCount.sum();
+  }
+
+  public int getQueuedCount() {
+    int queued = 0;
+    for (Stripe stripe : stripes) {
+      queued += stripe.size();
+    }
+    return queued;
+  }
+
+  @Override
+  public void close() {
+    if (ownsExecutor) {
+      ((ExecutorService) executor).shutdown();
+    }
+  }
+
+  private static ByteBuffer copyOf(ByteBuffer payload) {
+    ByteBuffer copy = ByteBuffer.allocate(payload.remaining());
+    copy.put(payload.duplicate());
+    return copy.flip();
+  }
+
+  private static ThreadFactory daemonThreadFactory() {
+    AtomicInteger threadNumber = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "shelly-dispatcher-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  public enum OverflowPolicy {
+    /**
+     * The receiving thread waits until the stripe has space again, which stalls the MQTT client's callback thread.
+     */
+    BLOCK,
+    /**
+     * The oldest queued message of the stripe is dropped.
+     */
+    DROP_OLDEST,
+    /**
+     * A queued message with the same topic is replaced by the new one, otherwise the oldest message is dropped.
+     */
+    COALESCE
+  }
+
+  private static final class Entry {
+    private final ShellyTopic topic;
+    private Optional<ByteBuffer> payload;
+    private BiConsumer<ShellyTopic, Optional<ByteBuffer>> processor;
+
+    private Entry(ShellyTopic topic, Optional<ByteBuffer> payload, BiConsumer<ShellyTopic, Optional<ByteBuffer>> processor) {
+      this.topic = topic;
+      this.payload = payload;
+      this.processor = processor;
+    }
+  }
+
+  private final class Stripe implements Runnable {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private boolean draining;
+
+    private void offer(ShellyTopic topic, Optional<ByteBuffer> payload, BiConsumer<ShellyTopic, Optional<ByteBuffer>> processor) {
+      boolean startDraining;
+      lock.lock();
+      try {
+        if (queue.size() >= queueCapacity && !makeRoom(topic, payload, processor)) {
+          return;
+        }
+        queue.addLast(new Entry(topic, payload, processor));
+        startDraining = !draining;
+        draining = true;
+      } finally {
+        lock.unlock();
+      }
+      if (startDraining) {
+        submit();
+      }
+    }
+
+    /**
+     * @return {@code false} if the message was merged into a queued one and must not be added
+     */
+    private boolean makeRoom(ShellyTopic topic, Optional<ByteBuffer> payload, BiConsumer<ShellyTopic, Optional<ByteBuffer>> processor) {
+      switch (overflowPolicy) {
+        case BLOCK -> {
+          while (queue.size() >= queueCapacity) {
+            notFull.awaitUninterruptibly();
+          }
+        }
+        case COALESCE -> {
+          for (Entry entry : queue) {
+            if (entry.topic.equals(topic)) {
+              entry.payload = payload;
+              entry.processor = processor;
+              coalescedCount.increment();
+              return false;
+            }
+          }
+          queue.pollFirst();
+          droppedCount.increment();
+        }
+        case DROP_OLDEST -> {
+          queue.pollFirst();
+          droppedCount.increment();
+        }
+      }
+      return true;
+    }
+
+    private void submit() {
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException e) {
+        lock.lock();
+        try {
+          droppedCount.add(queue.size());
+          queue.clear();
+          draining = false;
+          notFull.signalAll();
+        } finally {
+          lock.unlock();
+        }
+        log.warn("dispatcher is shut down, dropped queued messages", e);
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Entry entry;
+        lock.lock();
+        try {
+          entry = queue.pollFirst();
+          if (entry == null) {
+            draining = false;
+            return;
+          }
+          notFull.signal();
+        } finally {
+          lock.unlock();
+        }
+        try {
+          entry.processor.accept(entry.topic, entry.payload);
+        } catch (RuntimeException e) {
+          log.error("failed to process message of deviceId={}", entry.topic.deviceId(), e);
+        }
+      }
+    }
+
+    private int size() {
+      lock.lock();
+      try {
+        return queue.size();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
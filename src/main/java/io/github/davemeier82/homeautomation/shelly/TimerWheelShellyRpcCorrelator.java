@@ -0,0 +1,209 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.davemeier82.homeautomation.shelly;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import io.github.davemeier82.homeautomation.core.device.mqtt.MqttSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.ROOT_TOPIC;
+
+/**
+ * Subscribes to the RPC responses of all Gen2 devices and completes the future of the request with the same id. The
+ * requests in flight are kept in a concurrent map; their timeouts are tracked by a hashed timer wheel. Deadlines and
+ * the position of the wheel are both derived from {@link System#nanoTime()}: a single task advances the wheel to the
+ * current tick, catching up on the buckets of delayed ticks, so a timeout fires up to one tick late. Responses without
+ * a request in flight, e.g. after a timeout, are dropped.
+ */
+public class TimerWheelShellyRpcCorrelator implements ShellyRpcCorrelator, MqttSubscriber, AutoCloseable {
+
+  /**
+   * Gen2 devices publish a response to {@code <src>/rpc}, with {@code src} set to {@code <rpc topic>/response}.
+   */
+  public static final String RESPONSE_TOPIC_FILTER = ROOT_TOPIC + "+/rpc/response/#";
+
+  private static final Logger log = LoggerFactory.getLogger(TimerWheelShellyRpcCorrelator.class);
+  private static final int DEFAULT_WHEEL_SIZE = 512;
+
+  private final ObjectMapper objectMapper;
+  private final long tickNanos;
+  private final Queue<Timeout>[] wheel;
+  private final int mask;
+  private final Map<String, CompletableFuture<ShellyRpcResponse>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder unmatchedCount = new LongAdder();
+  private final ScheduledExecutorService timer;
+  private final boolean ownsTimer;
+  private final ScheduledFuture<?> ticker;
+  private final long startNanos = System.nanoTime();
+  private volatile long ticks;
+
+  public TimerWheelShellyRpcCorrelator(ObjectMapper objectMapper, Duration tick) {
+    this(objectMapper, tick, DEFAULT_WHEEL_SIZE, Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "shelly-rpc-timeouts");
+      thread.setDaemon(true);
+      return thread;
+    }), true);
+  }
+
+  /**
+   * @param wheelSize number of buckets, rounded up to a power of two. Timeouts longer than one revolution stay in their
+   *                  bucket for several revolutions.
+   */
+  public TimerWheelShellyRpcCorrelator(ObjectMapper objectMapper, Duration tick, int wheelSize, ScheduledExecutorService timer) {
+    this(objectMapper, tick, wheelSize, timer, false);
+  }
+
+  @SuppressWarnings("unchecked")
+  private TimerWheelShellyRpcCorrelator(ObjectMapper objectMapper, Duration tick, int wheelSize, ScheduledExecutorService timer, boolean ownsTimer) {
+    if (tick.isNegative() || tick.isZero()) {
+      throw new IllegalArgumentException("tick must be positive but was " + tick);
+    }
+    if (wheelSize <= 0 || wheelSize > 1 << 20) {
+      throw new IllegalArgumentException("wheelSize must be between 1 and 2^20 but was " + wheelSize);
+    }
+    this.objectMapper = objectMapper;
+    this.timer = timer;
+    this.ownsTimer = ownsTimer;
+    tickNanos = tick.toNanos();
+    int buckets = Integer.highestOneBit(wheelSize);
+    if (buckets < wheelSize) {
+      buckets <<= 1;
+    }
+    wheel = new Queue[buckets];
+    for (int i = 0; i < buckets; i++) {
+      wheel[i] = new ConcurrentLinkedQueue<>();
+    }
+    mask = buckets - 1;
+    ticker = timer.scheduleAtFixedRate(this::tick, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String getTopic() {
+    return RESPONSE_TOPIC_FILTER;
+  }
+
+  @Override
+  public CompletableFuture<ShellyRpcResponse> expect(String id, Duration timeout) {
+    CompletableFuture<ShellyRpcResponse> future = new CompletableFuture<>();
+    if (inFlight.putIfAbsent(id, future) != null) {
+      throw new IllegalStateException("RPC " + id + " is already in flight");
+    }
+    future.whenComplete((response, throwable) -> inFlight.remove(id, future));
+    long deadline = (System.nanoTime() - startNanos + Math.max(timeout.toNanos(), 1) + tickNanos - 1) / tickNanos;
+    Timeout entry = new Timeout(id, deadline, timeout, future);
+    long bucket = Math.max(deadline, ticks + 1);
+    while (true) {
+      wheel[(int) (bucket & mask)].add(entry);
+      long current = ticks;
+      if (current < bucket) {
+        return future;
+      }
+      // the wheel passed the bucket while the timeout was added, the next bucket expires it
+      bucket = current + 1;
+    }
+  }
+
+  @Override
+  public void processMessage(String topic, Optional<ByteBuffer> payload) {
+    if (payload.isEmpty()) {
+      return;
+    }
+    JsonNode response;
+    try {
+      response = objectMapper.readTree(new ByteBufferBackedInputStream(payload.get().duplicate()));
+    } catch (IOException e) {
+      log.warn("failed to read RPC response of topic {}", topic, e);
+      return;
+    }
+    String id = response.path("id").asText(null);
+    CompletableFuture<ShellyRpcResponse> future = id == null ? null : inFlight.remove(id);
+    if (future == null) {
+      unmatchedCount.increment();
+      log.debug("dropped RPC response without request in flight on topic {}: id={}", topic, id);
+      return;
+    }
+    JsonNode error = response.get("error");
+    if (error != null) {
+      future.completeExceptionally(new ShellyRpcException(id, error.path("code").asInt(), error.path("message").asText()));
+    } else {
+      future.complete(new ShellyRpcResponse(id, response.path("src").asText(null), response.get("result")));
+    }
+  }
+
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  public long getUnmatchedCount() {
+    return unmatchedCount.sum();
+  }
+
+  private void tick() {
+    long now = (System.nanoTime() - startNanos) / tickNanos;
+    for (long bucket = Math.max(ticks, now - wheel.length) + 1; bucket <= now; bucket++) {
+      ticks = bucket;
+      expire(wheel[(int) (bucket & mask)], now);
+    }
+  }
+
+  private static void expire(Queue<Timeout> timeouts, long now) {
+    Iterator<Timeout> iterator = timeouts.iterator();
+    while (iterator.hasNext()) {
+      Timeout timeout = iterator.next();
+      if (timeout.future().isDone()) {
+        iterator.remove();
+      } else if (timeout.deadline() <= now) {
+        iterator.remove();
+        timeout.future().completeExceptionally(new TimeoutException("no response to RPC " + timeout.id() + " within " + timeout.timeout()));
+      }
+    }
+  }
+
+  /**
+   * Stops the timer and cancels all requests in flight.
+   */
+  @Override
+  public void close() {
+    ticker.cancel(false);
+    if (ownsTimer) {
+      timer.shutdownNow();
+    }
+    inFlight.values().forEach(future -> future.cancel(false));
+  }
+
+  private record Timeout(String id, long deadline, Duration timeout, CompletableFuture<ShellyRpcResponse> future) {
+  }
+}
@@ -26,21 +26,19 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
-import static java.util.Arrays.stream;
-
 public class ShellyDeviceFactory implements DeviceFactory {
 
   private static final Logger log = LoggerFactory.getLogger(ShellyDeviceFactory.class);
-
+  private static final Set<ShellyDeviceType> SUPPORTED_DEVICE_TYPES = Set.of(ShellyDeviceType.values());
 
   @Override
   public boolean supportsDeviceType(DeviceType type) {
-    return stream(ShellyDeviceType.values()).anyMatch(t -> t == type);
+    return type instanceof ShellyDeviceType;
   }
 
   @Override
   public Set<? extends DeviceType> getSupportedDeviceTypes() {
-    return Set.of(ShellyDeviceType.values());
+    return SUPPORTED_DEVICE_TYPES;
   }
 
   @Override
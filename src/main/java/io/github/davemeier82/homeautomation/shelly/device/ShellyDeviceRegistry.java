@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device;
+
+import io.github.davemeier82.homeautomation.core.device.Device;
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.repositories.DeviceRepository;
+import io.github.davemeier82.homeautomation.shelly.ShellyMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ShellyDeviceRegistry {
+
+  private static final Logger log = LoggerFactory.getLogger(ShellyDeviceRegistry.class);
+  private final ShellyDeviceFactory shellyDeviceFactory;
+  private final DeviceRepository deviceRepository;
+  private final ShellyMetrics metrics;
+  private final Map<DeviceId, CompletableFuture<Device>> knownDevices = new ConcurrentHashMap<>();
+
+  public ShellyDeviceRegistry(ShellyDeviceFactory shellyDeviceFactory, DeviceRepository deviceRepository) {
+    this(shellyDeviceFactory, deviceRepository, ShellyMetrics.NONE);
+  }
+
+  public ShellyDeviceRegistry(ShellyDeviceFactory shellyDeviceFactory, DeviceRepository deviceRepository, ShellyMetrics metrics) {
+    this.shellyDeviceFactory = shellyDeviceFactory;
+    this.deviceRepository = deviceRepository;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Returns the device, loading or creating it on first use. The repository is called outside of the map lock, once
+   * per device; concurrent callers for the same device wait for the first one.
+   */
+  public Device getOrCreate(DeviceId deviceId) {
+    CompletableFuture<Device> device = knownDevices.get(deviceId);
+    if (device == null) {
+      CompletableFuture<Device> resolving = new CompletableFuture<>();
+      device = knownDevices.putIfAbsent(deviceId, resolving);
+      if (device == null) {
+        return resolve(deviceId, resolving);
+      }
+    }
+    return device.join();
+  }
+
+  /**
+   * Forgets a device, so the next message of it loads or creates the device again. Call this when the device is
+   * deleted from the {@link DeviceRepository}, otherwise the deleted instance keeps being served until the restart.
+   */
+  public void invalidate(DeviceId deviceId) {
+    knownDevices.remove(deviceId);
+  }
+
+  /**
+   * Forgets all devices, e.g. after the {@link DeviceRepository} was cleared or reloaded.
+   */
+  public void invalidateAll() {
+    knownDevices.clear();
+  }
+
+  public boolean isKnown(DeviceId deviceId) {
+    return knownDevices.containsKey(deviceId);
+  }
+
+  public int size() {
+    return knownDevices.size();
+  }
+
+  private Device resolve(DeviceId deviceId, CompletableFuture<Device> resolving) {
+    try {
+      Device device = deviceRepository.getByDeviceId(deviceId).orElseGet(() -> createDevice(deviceId));
+      resolving.complete(device);
+      return device;
+    } catch (RuntimeException e) {
+      knownDevices.remove(deviceId, resolving);
+      resolving.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private Device createDevice(DeviceId deviceId) {
+    Device newDevice = shellyDeviceFactory.createDevice(deviceId.type(), deviceId.id(), deviceId.toString(), Map.of(), Map.of()).orElseThrow();
+    deviceRepository.save(newDevice);
+    metrics.deviceCreated((ShellyDeviceType) deviceId.type());
+    log.debug("saved new device {}", deviceId);
+    return newDevice;
+  }
+}
@@ -18,9 +18,13 @@ package io.github.davemeier82.homeautomation.shelly.device;
 
 import io.github.davemeier82.homeautomation.core.device.DeviceType;
 
-import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
 
+import static java.util.Arrays.stream;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toUnmodifiableMap;
+
 public enum ShellyDeviceType implements DeviceType {
   SHELLY_1("shelly1", "shelly1"),
   SHELLY_2("shelly2", "shellyswitch"),
@@ -32,20 +36,39 @@ public enum ShellyDeviceType implements DeviceType {
   SHELLY_DOOR_WINDOW_2("shelly-door-window-2", "shellydw2"),
   SHELLY_1_MINI_GEN3("shelly1-mini-gen3", "shelly1minig3");
 
+  private static final Map<String, ShellyDeviceType> BY_TYPE_TOPIC_PREFIX = stream(values()).collect(toUnmodifiableMap(t -> t.typeTopicPrefix, identity()));
+  private static final ShellyDeviceType[] VALUES = values();
+  private static final Map<String, ShellyDeviceType> BY_TYPE_NAME = stream(values()).collect(toUnmodifiableMap(t -> t.typeName, identity()));
+
   private final String typeName;
   private final String typeTopicPrefix;
+  private final String typeTopicPrefixWithSeparator;
 
   ShellyDeviceType(String typeName, String typeTopicPrefix) {
     this.typeName = typeName;
     this.typeTopicPrefix = typeTopicPrefix;
+    this.typeTopicPrefixWithSeparator = typeTopicPrefix + "-";
   }
 
   public static Optional<ShellyDeviceType> getByTypeTopicPrefix(String typeTopicPrefix) {
-    return Arrays.stream(values()).filter(t -> t.typeTopicPrefix.equals(typeTopicPrefix)).findAny();
+    return Optional.ofNullable(BY_TYPE_TOPIC_PREFIX.get(typeTopicPrefix));
+  }
+
+  /**
+   * Looks up the type prefix between {@code start} and {@code end} of a topic without copying it.
+   */
+  public static Optional<ShellyDeviceType> getByTypeTopicPrefix(String topic, int start, int end) {
+    int length = end - start;
+    for (ShellyDeviceType type : VALUES) {
+      if (type.typeTopicPrefix.length() == length && topic.regionMatches(start, type.typeTopicPrefix, 0, length)) {
+        return Optional.of(type);
+      }
+    }
+    return Optional.empty();
   }
 
   public static Optional<ShellyDeviceType> getByTypeName(String typeName) {
-    return Arrays.stream(values()).filter(t -> t.typeName.equals(typeName)).findAny();
+    return Optional.ofNullable(BY_TYPE_NAME.get(typeName));
   }
 
   @Override
@@ -54,6 +77,6 @@ public enum ShellyDeviceType implements DeviceType {
   }
 
   public String getTypeTopicPrefix() {
-    return typeTopicPrefix + "-";
+    return typeTopicPrefixWithSeparator;
   }
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.aggregation;
+
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Takes over power samples that should not be published one by one. Samples taken over bypass the value filter: the
+ * aggregate is published once per window, which already bounds the rate.
+ */
+public interface ShellyPowerAggregator {
+
+  ShellyPowerAggregator NONE = (devicePropertyId, power, receivedAt, displayName) -> false;
+
+  /**
+   * @return {@code true} if the sample was taken over and must not be published by the caller
+   */
+  boolean aggregate(DevicePropertyId devicePropertyId, double power, OffsetDateTime receivedAt, String displayName);
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.aggregation;
+
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects power samples per property and publishes one statistic per window. All properties share a single flush
+ * task, so the number of timers does not grow with the number of channels.
+ */
+public class WindowedShellyPowerAggregator implements ShellyPowerAggregator, AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(WindowedShellyPowerAggregator.class);
+
+  private final PowerPublisher publisher;
+  private final Clock clock;
+  private final Duration window;
+  private final Statistic statistic;
+  private final ScheduledExecutorService timer;
+  private final boolean ownsTimer;
+  private final Map<DevicePropertyId, Accumulator> accumulators = new ConcurrentHashMap<>();
+  private ScheduledFuture<?> flushTask;
+
+  public WindowedShellyPowerAggregator(PowerPublisher publisher, Clock clock, Duration window, Statistic statistic) {
+    this(publisher, clock, window, statistic, Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "shelly-power-aggregator");
+      thread.setDaemon(true);
+      return thread;
+    }), true);
+  }
+
+  public WindowedShellyPowerAggregator(PowerPublisher publisher,
+                                       Clock clock,
+                                       Duration window,
+                                       Statistic statistic,
+                                       ScheduledExecutorService timer
+  ) {
+    this(publisher, clock, window, statistic, timer, false);
+  }
+
+  private WindowedShellyPowerAggregator(PowerPublisher publisher,
+                                        Clock clock,
+                                        Duration window,
+                                        Statistic statistic,
+                                        ScheduledExecutorService timer,
+                                        boolean ownsTimer
+  ) {
+    if (window.isNegative() || window.isZero()) {
+      throw new IllegalArgumentException("window must be positive but was " + window);
+    }
+    this.publisher = publisher;
+    this.clock = clock;
+    this.window = window;
+    this.statistic = statistic;
+    this.timer = timer;
+    this.ownsTimer = ownsTimer;
+  }
+
+  public synchronized void start() {
+    if (flushTask == null) {
+      long windowMillis = window.toMillis();
+      flushTask = timer.scheduleAtFixedRate(this::flush, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (flushTask != null) {
+      flushTask.cancel(false);
+      flushTask = null;
+    }
+    if (ownsTimer) {
+      timer.shutdown();
+    }
+  }
+
+  @Override
+  public boolean aggregate(DevicePropertyId devicePropertyId, double power, OffsetDateTime receivedAt, String displayName) {
+    Accumulator accumulator = accumulators.get(devicePropertyId);
+    if (accumulator == null) {
+      accumulator = accumulators.computeIfAbsent(devicePropertyId, id -> new Accumulator(displayName));
+    }
+    accumulator.add(power, receivedAt.toInstant().toEpochMilli());
+    return true;
+  }
+
+  /**
+   * Closes the current window of every property and publishes the statistic of those that received samples.
+   */
+  public void flush() {
+    long now = clock.millis();
+    OffsetDateTime windowEnd = null;
+    for (Map.Entry<DevicePropertyId, Accumulator> entry : accumulators.entrySet()) {
+      double value = entry.getValue().close(statistic, now);
+      if (Double.isNaN(value)) {
+        continue;
+      }
+      if (windowEnd == null) {
+        windowEnd = OffsetDateTime.now(clock);
+      }
+      try {
+        publisher.publish(value, windowEnd, entry.getKey(), entry.getValue().displayName);
+      } catch (RuntimeException e) {
+        log.error("failed to publish aggregated power of {}", entry.getKey(), e);
+      }
+    }
+  }
+
+  public int size() {
+    return accumulators.size();
+  }
+
+  @FunctionalInterface
+  public interface PowerPublisher {
+    void publish(double power, OffsetDateTime time, DevicePropertyId devicePropertyId, String displayName);
+  }
+
+  public enum Statistic {
+    MIN, MAX, MEAN, LAST, TIME_WEIGHTED_MEAN
+  }
+
+  private static final class Accumulator {
+    private final String displayName;
+    private int count;
+    private double min;
+    private double max;
+    private double sum;
+    private double last;
+    private long lastAtMillis;
+    private double weightedSum;
+    private long weightedFromMillis;
+    private boolean hasLast;
+
+    private Accumulator(String displayName) {
+      this.displayName = displayName;
+    }
+
+    private synchronized void add(double value, long receivedAtMillis) {
+      long atMillis = receivedAtMillis;
+      if (hasLast) {
+        // a sample received before the last flush but processed after it counts from the flush
+        atMillis = Math.max(atMillis, lastAtMillis);
+        weightedSum += last * (atMillis - lastAtMillis);
+      } else {
+        weightedFromMillis = atMillis;
+      }
+      if (count == 0 || value < min) {
+        min = value;
+      }
+      if (count == 0 || value > max) {
+        max = value;
+      }
+      count++;
+      sum += value;
+      last = value;
+      lastAtMillis = atMillis;
+      hasLast = true;
+    }
+
+    /**
+     * @return the statistic of the closed window or {@link Double#NaN} if no sample was received
+     */
+    private synchronized double close(Statistic statistic, long nowMillis) {
+      double result = count == 0 ? Double.NaN : switch (statistic) {
+        case MIN -> min;
+        case MAX -> max;
+        case MEAN -> sum / count;
+        case LAST -> last;
+        case TIME_WEIGHTED_MEAN -> timeWeightedMean(nowMillis);
+      };
+      count = 0;
+      sum = 0;
+      weightedSum = 0;
+      weightedFromMillis = nowMillis;
+      lastAtMillis = nowMillis;
+      return result;
+    }
+
+    private double timeWeightedMean(long nowMillis) {
+      long span = nowMillis - weightedFromMillis;
+      if (span <= 0) {
+        return last;
+      }
+      return (weightedSum + last * (nowMillis - lastAtMillis)) / span;
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.command;
+
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes the first command for a device property at once and then at most one command per interval, always the
+ * latest one submitted. Each property has a lock-free slot holding its pending command; delayed commands are published
+ * on the thread of the timer. A command published at once throws its failure to the submitter, the failure of a delayed
+ * command is logged. Once closed, pending commands are flushed and later commands are published at once.
+ */
+public class LatestWinsShellyCommandCoalescer implements ShellyCommandCoalescer, AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(LatestWinsShellyCommandCoalescer.class);
+
+  private final long intervalNanos;
+  private final ScheduledExecutorService timer;
+  private final boolean ownsTimer;
+  private final Map<DevicePropertyId, Slot> slots = new ConcurrentHashMap<>();
+  private volatile boolean closed;
+
+  public LatestWinsShellyCommandCoalescer(Duration interval) {
+    this(interval, Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "shelly-command-coalescer");
+      thread.setDaemon(true);
+      return thread;
+    }), true);
+  }
+
+  public LatestWinsShellyCommandCoalescer(Duration interval, ScheduledExecutorService timer) {
+    this(interval, timer, false);
+  }
+
+  private LatestWinsShellyCommandCoalescer(Duration interval, ScheduledExecutorService timer, boolean ownsTimer) {
+    if (interval.isNegative() || interval.isZero()) {
+      throw new IllegalArgumentException("interval must be positive but was " + interval);
+    }
+    intervalNanos = interval.toNanos();
+    this.timer = timer;
+    this.ownsTimer = ownsTimer;
+  }
+
+  @Override
+  public void submit(DevicePropertyId devicePropertyId, Command command) {
+    if (closed) {
+      command.publish();
+      return;
+    }
+    Slot slot = slots.get(devicePropertyId);
+    if (slot == null) {
+      slot = slots.computeIfAbsent(devicePropertyId, Slot::new);
+    }
+    slot.pending.set(command);
+    if (slot.throttled.compareAndSet(false, true)) {
+      publishImmediately(slot);
+    }
+  }
+
+  @Override
+  public void cancel(DevicePropertyId devicePropertyId) {
+    Slot slot = slots.get(devicePropertyId);
+    if (slot != null) {
+      slot.pending.set(null);
+    }
+  }
+
+  /**
+   * Publishes all pending commands without waiting for their interval to end.
+   */
+  public void flush() {
+    slots.values().forEach(slot -> publish(slot, slot.pending.getAndSet(null)));
+  }
+
+  public int getPendingCount() {
+    return (int) slots.values().stream().filter(slot -> slot.pending.get() != null).count();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    flush();
+    if (ownsTimer) {
+      timer.shutdownNow();
+    }
+  }
+
+  private void publishImmediately(Slot slot) {
+    try {
+      Command command = slot.pending.getAndSet(null);
+      if (command != null) {
+        command.publish();
+      }
+    } finally {
+      throttle(slot);
+    }
+  }
+
+  private void publishDeferred(Slot slot) {
+    publish(slot, slot.pending.getAndSet(null));
+    throttle(slot);
+  }
+
+  private void throttle(Slot slot) {
+    if (closed) {
+      return;
+    }
+    timer.schedule(() -> endInterval(slot), intervalNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private void endInterval(Slot slot) {
+    if (closed) {
+      return;
+    }
+    if (slot.pending.get() != null) {
+      publishDeferred(slot);
+      return;
+    }
+    slot.throttled.set(false);
+    // a command submitted between the check and the reset has seen the slot throttled
+    if (slot.pending.get() != null && slot.throttled.compareAndSet(false, true)) {
+      publishDeferred(slot);
+    }
+  }
+
+  private static void publish(Slot slot, Command command) {
+    if (command == null) {
+      return;
+    }
+    try {
+      command.publish();
+    } catch (RuntimeException e) {
+      log.error("failed to publish command for {}", slot.devicePropertyId, e);
+    }
+  }
+
+  private static final class Slot {
+    private final DevicePropertyId devicePropertyId;
+    private final AtomicReference<Command> pending = new AtomicReference<>();
+    private final AtomicBoolean throttled = new AtomicBoolean();
+
+    private Slot(DevicePropertyId devicePropertyId) {
+      this.devicePropertyId = devicePropertyId;
+    }
+  }
+}
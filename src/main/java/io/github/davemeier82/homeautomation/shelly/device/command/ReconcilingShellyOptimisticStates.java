@@ -0,0 +1,242 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.davemeier82.homeautomation.shelly.device.command;
+
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.core.device.property.RollerState;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandle;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandleRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.RELAY_STATE;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.ROLLER_STATE;
+
+/**
+ * Publishes the expected relay or roller state as soon as a command is sent and keeps it pending until the device
+ * reports its state. A report that confirms the expected state is dropped, as it was published already, one that
+ * differs is always published, even if the value filter would drop it as a repetition. Without a report within the
+ * timeout the last reported state is published again.
+ * <p>
+ * Only properties that {@link ShellyPropertyHandleRegistry#find} knows get an optimistic state, because their display
+ * name is taken from the handle. A processor creates the handle with the first state the property reports.
+ */
+public class ReconcilingShellyOptimisticStates implements ShellyOptimisticStates, AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(ReconcilingShellyOptimisticStates.class);
+
+  private final StatePublisher<Boolean> relayStatePublisher;
+  private final StatePublisher<RollerState> rollerStatePublisher;
+  private final ShellyPropertyHandleRegistry propertyHandles;
+  private final long timeoutNanos;
+  private final ScheduledExecutorService timer;
+  private final boolean ownsTimer;
+  private final Clock clock;
+  private final Map<DevicePropertyId, PropertyState> relayStates = new ConcurrentHashMap<>();
+  private final Map<DevicePropertyId, PropertyState> rollerStates = new ConcurrentHashMap<>();
+
+  public ReconcilingShellyOptimisticStates(StatePublisher<Boolean> relayStatePublisher,
+                                           StatePublisher<RollerState> rollerStatePublisher,
+                                           ShellyPropertyHandleRegistry propertyHandles,
+                                           Duration timeout
+  ) {
+    this(relayStatePublisher, rollerStatePublisher, propertyHandles, timeout, createTimer(), true, Clock.systemUTC());
+  }
+
+  public ReconcilingShellyOptimisticStates(StatePublisher<Boolean> relayStatePublisher,
+                                           StatePublisher<RollerState> rollerStatePublisher,
+                                           ShellyPropertyHandleRegistry propertyHandles,
+                                           Duration timeout,
+                                           ScheduledExecutorService timer,
+                                           Clock clock
+  ) {
+    this(relayStatePublisher, rollerStatePublisher, propertyHandles, timeout, timer, false, clock);
+  }
+
+  private ReconcilingShellyOptimisticStates(StatePublisher<Boolean> relayStatePublisher,
+                                            StatePublisher<RollerState> rollerStatePublisher,
+                                            ShellyPropertyHandleRegistry propertyHandles,
+                                            Duration timeout,
+                                            ScheduledExecutorService timer,
+                                            boolean ownsTimer,
+                                            Clock clock
+  ) {
+    if (timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException("timeout must be positive but was " + timeout);
+    }
+    this.relayStatePublisher = relayStatePublisher;
+    this.rollerStatePublisher = rollerStatePublisher;
+    this.propertyHandles = propertyHandles;
+    this.timer = timer;
+    this.ownsTimer = ownsTimer;
+    this.clock = clock;
+    timeoutNanos = timeout.toNanos();
+  }
+
+  private static ScheduledExecutorService createTimer() {
+    ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "shelly-optimistic-states");
+      thread.setDaemon(true);
+      return thread;
+    });
+    timer.setRemoveOnCancelPolicy(true);
+    return timer;
+  }
+
+  @Override
+  public void relayCommanded(DevicePropertyId devicePropertyId, boolean on) {
+    commanded(devicePropertyId, RELAY_STATE, on);
+  }
+
+  @Override
+  public void rollerCommanded(DevicePropertyId devicePropertyId, RollerState state) {
+    commanded(devicePropertyId, ROLLER_STATE, state);
+  }
+
+  @Override
+  public ShellyValueFilter observe(ShellyValueFilter valueFilter) {
+    return new ShellyValueFilter() {
+      @Override
+      public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, boolean value) {
+        return reported(devicePropertyId, kind, value, valueFilter.accept(devicePropertyId, kind, value));
+      }
+
+      @Override
+      public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, Enum<?> value) {
+        return reported(devicePropertyId, kind, value, valueFilter.accept(devicePropertyId, kind, value));
+      }
+
+      @Override
+      public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, double value) {
+        return valueFilter.accept(devicePropertyId, kind, value);
+      }
+    };
+  }
+
+  public boolean isPending(DevicePropertyId devicePropertyId) {
+    return isPending(relayStates.get(devicePropertyId)) || isPending(rollerStates.get(devicePropertyId));
+  }
+
+  public int getPendingCount() {
+    return (int) (relayStates.values().stream().filter(ReconcilingShellyOptimisticStates::isPending).count()
+        + rollerStates.values().stream().filter(ReconcilingShellyOptimisticStates::isPending).count());
+  }
+
+  @Override
+  public void close() {
+    if (ownsTimer) {
+      timer.shutdownNow();
+    }
+  }
+
+  private void commanded(DevicePropertyId devicePropertyId, ShellyValueKind kind, Object expected) {
+    ShellyPropertyHandle handle = propertyHandles.find(devicePropertyId, kind);
+    if (handle == null) {
+      log.debug("no optimistic {} for {}, it did not report a state yet", kind, devicePropertyId);
+      return;
+    }
+    PropertyState state = states(kind).computeIfAbsent(handle.devicePropertyId(), id -> new PropertyState());
+    Pending pending = new Pending(handle, expected);
+    Pending previous = state.pending.getAndSet(pending);
+    if (previous != null) {
+      previous.cancel();
+    }
+    publish(handle, expected);
+    pending.timeout = timer.schedule(() -> rollBack(state, pending), timeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private boolean reported(DevicePropertyId devicePropertyId, ShellyValueKind kind, Object value, boolean accepted) {
+    if (kind != RELAY_STATE && kind != ROLLER_STATE) {
+      return accepted;
+    }
+    PropertyState state = states(kind).computeIfAbsent(devicePropertyId, id -> new PropertyState());
+    state.reported = value;
+    Pending pending = state.pending.getAndSet(null);
+    if (pending == null) {
+      return accepted;
+    }
+    pending.cancel();
+    return !value.equals(pending.expected);
+  }
+
+  private void rollBack(PropertyState state, Pending pending) {
+    if (!state.pending.compareAndSet(pending, null)) {
+      return;
+    }
+    Object reported = state.reported;
+    log.debug("{} did not confirm {} within the timeout, restoring {}", pending.handle.devicePropertyId(), pending.expected, reported);
+    if (reported != null && !reported.equals(pending.expected)) {
+      publish(pending.handle, reported);
+    }
+  }
+
+  private void publish(ShellyPropertyHandle handle, Object value) {
+    OffsetDateTime now = OffsetDateTime.now(clock);
+    if (handle.kind() == RELAY_STATE) {
+      relayStatePublisher.publish((Boolean) value, now, handle.devicePropertyId(), handle.displayName());
+    } else {
+      rollerStatePublisher.publish((RollerState) value, now, handle.devicePropertyId(), handle.displayName());
+    }
+  }
+
+  private Map<DevicePropertyId, PropertyState> states(ShellyValueKind kind) {
+    return kind == RELAY_STATE ? relayStates : rollerStates;
+  }
+
+  private static boolean isPending(PropertyState state) {
+    return state != null && state.pending.get() != null;
+  }
+
+  public interface StatePublisher<T> {
+    void publish(T value, OffsetDateTime time, DevicePropertyId devicePropertyId, String displayName);
+  }
+
+  private static final class PropertyState {
+    private final AtomicReference<Pending> pending = new AtomicReference<>();
+    private volatile Object reported;
+  }
+
+  private static final class Pending {
+    private final ShellyPropertyHandle handle;
+    private final Object expected;
+    private volatile ScheduledFuture<?> timeout;
+
+    private Pending(ShellyPropertyHandle handle, Object expected) {
+      this.handle = handle;
+      this.expected = expected;
+    }
+
+    private void cancel() {
+      ScheduledFuture<?> scheduled = timeout;
+      if (scheduled != null) {
+        scheduled.cancel(false);
+      }
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.command;
+
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+
+/**
+ * Decides when the commands for a device property are published. Commands that are superseded before they are
+ * published may be dropped, the last command for a property never is.
+ */
+@FunctionalInterface
+public interface ShellyCommandCoalescer {
+
+  ShellyCommandCoalescer IMMEDIATE = (devicePropertyId, command) -> command.publish();
+
+  void submit(DevicePropertyId devicePropertyId, Command command);
+
+  /**
+   * Discards the pending command of a property, because a command was published for it by other means.
+   */
+  default void cancel(DevicePropertyId devicePropertyId) {
+  }
+
+  @FunctionalInterface
+  interface Command {
+    void publish();
+  }
+}
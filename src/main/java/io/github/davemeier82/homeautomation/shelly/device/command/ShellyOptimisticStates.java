@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.davemeier82.homeautomation.shelly.device.command;
+
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.core.device.property.RollerState;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+
+/**
+ * Publishes the state a command is expected to lead to before the device reports it.
+ * <p>
+ * Roller position commands get no optimistic state: a roller only reports its position once it stops, so there is no
+ * state that could be confirmed or rolled back within a timeout while it is moving.
+ */
+public interface ShellyOptimisticStates {
+
+  ShellyOptimisticStates NONE = new ShellyOptimisticStates() {
+  };
+
+  default void relayCommanded(DevicePropertyId devicePropertyId, boolean on) {
+  }
+
+  default void rollerCommanded(DevicePropertyId devicePropertyId, RollerState state) {
+  }
+
+  /**
+   * Wraps the value filter of a message processor to receive the states reported by the devices.
+   */
+  default ShellyValueFilter observe(ShellyValueFilter valueFilter) {
+    return valueFilter;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.filter;
+
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drops repeated states and analog values that changed less than the deadband of their kind. An analog value is
+ * forwarded anyway once the property was silent for longer than the maximum silence of its deadband. The silence is
+ * only checked when a value arrives, the filter never publishes a value on its own.
+ */
+public class DeadbandShellyValueFilter implements ShellyValueFilter {
+
+  /**
+   * Measured values that fluctuate slightly between reports. Positions, levels and angles are set deliberately, so
+   * every change of them matters.
+   */
+  public static final Set<ShellyValueKind> TELEMETRY_KINDS = Collections.unmodifiableSet(EnumSet.of(ShellyValueKind.POWER, ShellyValueKind.TEMPERATURE,
+      ShellyValueKind.HUMIDITY));
+
+  private final Clock clock;
+  private final Map<ShellyValueKind, Deadband> deadbands = new EnumMap<>(ShellyValueKind.class);
+  private final Map<ShellyValueKind, Map<DevicePropertyId, Slot>> slotsByKind = new EnumMap<>(ShellyValueKind.class);
+
+  public DeadbandShellyValueFilter(Clock clock, Deadband defaultDeadband) {
+    this(clock, defaultDeadband, Map.of());
+  }
+
+  public DeadbandShellyValueFilter(Clock clock, Deadband defaultDeadband, Map<ShellyValueKind, Deadband> deadbandByKind) {
+    this.clock = clock;
+    for (ShellyValueKind kind : ShellyValueKind.values()) {
+      deadbands.put(kind, deadbandByKind.getOrDefault(kind, defaultDeadband));
+      slotsByKind.put(kind, new ConcurrentHashMap<>());
+    }
+  }
+
+  @Override
+  public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, boolean value) {
+    return acceptState(slot(devicePropertyId, kind), value ? 1 : 0);
+  }
+
+  @Override
+  public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, Enum<?> value) {
+    return acceptState(slot(devicePropertyId, kind), value.ordinal());
+  }
+
+  @Override
+  public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, double value) {
+    Deadband deadband = deadbands.get(kind);
+    Slot slot = slot(devicePropertyId, kind);
+    long now = clock.millis();
+    synchronized (slot) {
+      if (slot.initialized && !deadband.isExceeded(slot.value, value) && now - slot.forwardedAtMillis < deadband.maxSilenceMillis()) {
+        return false;
+      }
+      slot.update(value, now);
+      return true;
+    }
+  }
+
+  public void reset(DevicePropertyId devicePropertyId) {
+    slotsByKind.values().forEach(slots -> slots.remove(devicePropertyId));
+  }
+
+  private boolean acceptState(Slot slot, double state) {
+    synchronized (slot) {
+      if (slot.initialized && slot.value == state) {
+        return false;
+      }
+      slot.update(state, 0);
+      return true;
+    }
+  }
+
+  private Slot slot(DevicePropertyId devicePropertyId, ShellyValueKind kind) {
+    return slotsByKind.get(kind).computeIfAbsent(devicePropertyId, id -> new Slot());
+  }
+
+  /**
+   * @param absolute        minimal absolute change that is forwarded
+   * @param relativePercent minimal change in percent of the last forwarded value that is forwarded
+   * @param maxSilence      time after which an unchanged value is forwarded again, {@code null} or zero to disable
+   */
+  public record Deadband(double absolute, double relativePercent, Duration maxSilence) {
+
+    public static final Deadband EXACT = new Deadband(0, 0, null);
+
+    /**
+     * @return {@code true} if the change exceeds both the absolute and the relative threshold
+     */
+    boolean isExceeded(double lastValue, double value) {
+      double change = Math.abs(value - lastValue);
+      return change > absolute && change > Math.abs(lastValue) * relativePercent / 100d;
+    }
+
+    long maxSilenceMillis() {
+      return maxSilence == null || maxSilence.isZero() ? Long.MAX_VALUE : maxSilence.toMillis();
+    }
+  }
+
+  private static final class Slot {
+    private boolean initialized;
+    private double value;
+    private long forwardedAtMillis;
+
+    private void update(double value, long forwardedAtMillis) {
+      this.initialized = true;
+      this.value = value;
+      this.forwardedAtMillis = forwardedAtMillis;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.filter;
+
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+
+/**
+ * Decides whether a received value is forwarded to the value update services.
+ */
+public interface ShellyValueFilter {
+
+  ShellyValueFilter NONE = new ShellyValueFilter() {
+    @Override
+    public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, boolean value) {
+      return true;
+    }
+
+    @Override
+    public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, Enum<?> value) {
+      return true;
+    }
+
+    @Override
+    public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, double value) {
+      return true;
+    }
+  };
+
+  boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, boolean value);
+
+  boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, Enum<?> value);
+
+  boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, double value);
+}
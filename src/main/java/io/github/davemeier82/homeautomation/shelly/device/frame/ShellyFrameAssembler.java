@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.frame;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Groups the values a battery powered device publishes after waking up, so they are delivered together with one
+ * shared timestamp.
+ */
+@FunctionalInterface
+public interface ShellyFrameAssembler {
+
+  ShellyFrameAssembler IMMEDIATE = (deviceId, receivedAt, update) -> update.apply(receivedAt);
+
+  void add(DeviceId deviceId, OffsetDateTime receivedAt, FrameUpdate update);
+
+  @FunctionalInterface
+  interface FrameUpdate {
+    void apply(OffsetDateTime time);
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.frame;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Is notified once per delivered frame, after all values of the frame were passed to the update services. Use it to
+ * run work once per wake-up of a device instead of once per value, e.g. evaluating rules or flushing persistence.
+ */
+@FunctionalInterface
+public interface ShellyFrameListener {
+
+  ShellyFrameListener NONE = (deviceId, time, valueCount) -> {
+  };
+
+  void frameDelivered(DeviceId deviceId, OffsetDateTime time, int valueCount);
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.frame;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens a frame with the first value of a device and delivers all values received within the assembly window
+ * together, using the receipt time of the first value. Frames are delivered on the thread of the timer.
+ * <p>
+ * The update services are still called once per value, as they have no batch operation. Once all values of a frame
+ * were delivered, the {@link ShellyFrameListener} is notified once per wake-up. Window states are not framed, so
+ * opening a window is published without delay.
+ */
+public class WindowedShellyFrameAssembler implements ShellyFrameAssembler, AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(WindowedShellyFrameAssembler.class);
+
+  private final Duration window;
+  private final ScheduledExecutorService timer;
+  private final boolean ownsTimer;
+  private final ShellyFrameListener frameListener;
+  private final Map<DeviceId, Frame> openFrames = new ConcurrentHashMap<>();
+
+  public WindowedShellyFrameAssembler(Duration window) {
+    this(window, ShellyFrameListener.NONE);
+  }
+
+  public WindowedShellyFrameAssembler(Duration window, ShellyFrameListener frameListener) {
+    this(window, Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "shelly-frame-assembler");
+      thread.setDaemon(true);
+      return thread;
+    }), true, frameListener);
+  }
+
+  public WindowedShellyFrameAssembler(Duration window, ScheduledExecutorService timer) {
+    this(window, timer, ShellyFrameListener.NONE);
+  }
+
+  public WindowedShellyFrameAssembler(Duration window, ScheduledExecutorService timer, ShellyFrameListener frameListener) {
+    this(window, timer, false, frameListener);
+  }
+
+  private WindowedShellyFrameAssembler(Duration window, ScheduledExecutorService timer, boolean ownsTimer, ShellyFrameListener frameListener) {
+    if (window.isNegative() || window.isZero()) {
+      throw new IllegalArgumentException("window must be positive but was " + window);
+    }
+    this.window = window;
+    this.timer = timer;
+    this.ownsTimer = ownsTimer;
+    this.frameListener = frameListener;
+  }
+
+  @Override
+  public void add(DeviceId deviceId, OffsetDateTime receivedAt, FrameUpdate update) {
+    while (true) {
+      Frame frame = openFrames.computeIfAbsent(deviceId, id -> openFrame(id, receivedAt));
+      synchronized (frame) {
+        if (!frame.delivered) {
+          frame.updates.add(update);
+          return;
+        }
+      }
+      openFrames.remove(deviceId, frame);
+    }
+  }
+
+  /**
+   * Delivers all open frames without waiting for their window to end.
+   */
+  public void flush() {
+    openFrames.forEach(this::deliver);
+  }
+
+  public int getOpenFrameCount() {
+    return openFrames.size();
+  }
+
+  @Override
+  public void close() {
+    flush();
+    if (ownsTimer) {
+      timer.shutdownNow();
+    }
+  }
+
+  private Frame openFrame(DeviceId deviceId, OffsetDateTime receivedAt) {
+    Frame frame = new Frame(receivedAt);
+    timer.schedule(() -> deliver(deviceId, frame), window.toMillis(), TimeUnit.MILLISECONDS);
+    return frame;
+  }
+
+  private void deliver(DeviceId deviceId, Frame frame) {
+    openFrames.remove(deviceId, frame);
+    synchronized (frame) {
+      if (frame.delivered) {
+        return;
+      }
+      frame.delivered = true;
+    }
+    for (FrameUpdate update : frame.updates) {
+      try {
+        update.apply(frame.time);
+      } catch (RuntimeException e) {
+        log.error("failed to deliver value of deviceId={}", deviceId, e);
+      }
+    }
+    try {
+      frameListener.frameDelivered(deviceId, frame.time, frame.updates.size());
+    } catch (RuntimeException e) {
+      log.error("frame listener failed for deviceId={}", deviceId, e);
+    }
+  }
+
+  private static final class Frame {
+    private final OffsetDateTime time;
+    private final List<FrameUpdate> updates = new ArrayList<>(4);
+    private boolean delivered;
+
+    private Frame(OffsetDateTime time) {
+      this.time = time;
+    }
+  }
+}
@@ -16,29 +16,47 @@
 
 package io.github.davemeier82.homeautomation.shelly.device.messageprocessor;
 
-import io.github.davemeier82.homeautomation.core.device.DeviceId;
 import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
 import io.github.davemeier82.homeautomation.core.updater.RelayStateValueUpdateService;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopic;
 import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandle;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandleRegistry;
+import io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.time.OffsetDateTime;
-import java.util.Optional;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 
-import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.devicePropertyIdFromSubTopic;
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.RELAY_STATE;
+import static io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRoute.forDeviceTypes;
+import static io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper.equalsAsciiIgnoreCase;
 
 public class Shelly1MessageProcessor implements ShellyDeviceMessageProcessor {
   private static final Logger log = LoggerFactory.getLogger(Shelly1MessageProcessor.class);
   private static final String DISPLAY_NAME = "Relay";
+  private static final Function<DevicePropertyId, String> RELAY_NAME = id -> id.deviceId().toString() + ": " + DISPLAY_NAME;
   private final RelayStateValueUpdateService relayStateValueUpdateService;
+  private final ShellyValueFilter valueFilter;
+  private final ShellyPropertyHandleRegistry propertyHandles;
 
 
   public Shelly1MessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService) {
+    this(relayStateValueUpdateService, ShellyValueFilter.NONE, new ShellyPropertyHandleRegistry());
+  }
+
+  public Shelly1MessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService,
+                                 ShellyValueFilter valueFilter,
+                                 ShellyPropertyHandleRegistry propertyHandles
+  ) {
     this.relayStateValueUpdateService = relayStateValueUpdateService;
+    this.valueFilter = valueFilter;
+    this.propertyHandles = propertyHandles;
   }
 
   @Override
@@ -47,22 +65,27 @@ public class Shelly1MessageProcessor implements ShellyDeviceMessageProcessor {
   }
 
   @Override
-  public void processMessage(String subTopic, Optional<ByteBuffer> payload, DeviceId deviceId, String devicePropertyType) {
-    payload.ifPresent(byteBuffer -> {
-      DevicePropertyId devicePropertyId = new DevicePropertyId(deviceId, devicePropertyIdFromSubTopic(subTopic).orElseThrow());
-      String message = UTF_8.decode(byteBuffer).toString();
-      log.debug("{}: {}", devicePropertyId, message);
-      if (!subTopic.contains("command")) {
-        if ("off".equalsIgnoreCase(message)) {
-          updateValue(false, devicePropertyId);
-        } else if ("on".equalsIgnoreCase(message)) {
-          updateValue(true, devicePropertyId);
-        }
-      }
-    });
+  public List<ShellyMessageRoute> getRoutes() {
+    return forDeviceTypes(getSupportedDeviceTypes())
+        .route("relay", "+", this::processRelayMessage)
+        .build();
+  }
+
+  private void processRelayMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    ShellyPropertyHandle handle = propertyHandles.get(topic.deviceId(), topic.subTopic(), RELAY_STATE, RELAY_NAME);
+    if (log.isDebugEnabled()) {
+      log.debug("{}: {}", handle.devicePropertyId(), PayloadMapper.toString(payload));
+    }
+    if (equalsAsciiIgnoreCase(payload, "off")) {
+      updateValue(false, handle, receivedAt);
+    } else if (equalsAsciiIgnoreCase(payload, "on")) {
+      updateValue(true, handle, receivedAt);
+    }
   }
 
-  private void updateValue(boolean isOn, DevicePropertyId devicePropertyId) {
-    relayStateValueUpdateService.setValue(isOn, OffsetDateTime.now(), devicePropertyId, devicePropertyId.deviceId().toString() + ": " + DISPLAY_NAME);
+  private void updateValue(boolean isOn, ShellyPropertyHandle handle, OffsetDateTime receivedAt) {
+    if (valueFilter.accept(handle.devicePropertyId(), RELAY_STATE, isOn)) {
+      relayStateValueUpdateService.setValue(isOn, receivedAt, handle.devicePropertyId(), handle.displayName());
+    }
   }
 }
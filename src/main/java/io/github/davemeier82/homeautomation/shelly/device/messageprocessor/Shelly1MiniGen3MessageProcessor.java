@@ -16,37 +16,59 @@
 
 package io.github.davemeier82.homeautomation.shelly.device.messageprocessor;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.github.davemeier82.homeautomation.core.device.DeviceId;
 import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
 import io.github.davemeier82.homeautomation.core.updater.RelayStateValueUpdateService;
-import io.github.davemeier82.homeautomation.shelly.ShellyRpc;
+import io.github.davemeier82.homeautomation.shelly.ShellyRpcNotification;
+import io.github.davemeier82.homeautomation.shelly.ShellyRpcNotificationDecoder;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopic;
 import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandle;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandleRegistry;
+import io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.OffsetDateTime;
-import java.util.Map;
-import java.util.Optional;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static io.github.davemeier82.homeautomation.shelly.ShellyRpcNotification.NOTIFY_STATUS;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.RELAY_STATE;
+import static io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRoute.forDeviceTypes;
 import static java.time.ZoneOffset.UTC;
 
 public class Shelly1MiniGen3MessageProcessor implements ShellyDeviceMessageProcessor {
   private static final Logger log = LoggerFactory.getLogger(Shelly1MiniGen3MessageProcessor.class);
   private static final String DISPLAY_NAME = "Relay";
+  private static final String SWITCH_COMPONENT = "switch:0";
+  private static final String SWITCH_PROPERTY_ID = "0";
+  private static final Function<DevicePropertyId, String> RELAY_NAME = id -> id.deviceId().toString() + ": " + DISPLAY_NAME;
   private final RelayStateValueUpdateService relayStateValueUpdateService;
-  private final ObjectMapper objectMapper;
+  private final ShellyValueFilter valueFilter;
+  private final ShellyRpcNotificationDecoder notificationDecoder;
+  private final ShellyPropertyHandleRegistry propertyHandles;
 
 
   public Shelly1MiniGen3MessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService, ObjectMapper objectMapper) {
+    this(relayStateValueUpdateService, objectMapper, ShellyValueFilter.NONE, new ShellyPropertyHandleRegistry());
+  }
+
+  public Shelly1MiniGen3MessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService,
+                                         ObjectMapper objectMapper,
+                                         ShellyValueFilter valueFilter,
+                                         ShellyPropertyHandleRegistry propertyHandles
+  ) {
     this.relayStateValueUpdateService = relayStateValueUpdateService;
-    this.objectMapper = objectMapper;
+    this.notificationDecoder = new ShellyRpcNotificationDecoder(objectMapper.getFactory());
+    this.valueFilter = valueFilter;
+    this.propertyHandles = propertyHandles;
   }
 
   @Override
@@ -55,32 +77,36 @@ public class Shelly1MiniGen3MessageProcessor implements ShellyDeviceMessageProce
   }
 
   @Override
-  public void processMessage(String subTopic, Optional<ByteBuffer> payload, DeviceId deviceId, String devicePropertyType) {
-    payload.ifPresent(byteBuffer -> {
-      String message = UTF_8.decode(byteBuffer).toString();
-      log.debug("{}: {}", deviceId, message);
-      try {
-        ShellyRpc rpcMessage = objectMapper.readValue(message, ShellyRpc.class);
-        if ("NotifyStatus".equals(rpcMessage.method())) {
-          DevicePropertyId devicePropertyId = new DevicePropertyId(deviceId, "0");
-          Map<String, Object> paramsMap = rpcMessage.params();
-          if (paramsMap != null) {
-            Map<String, Object> params = (Map<String, Object>) paramsMap.get("switch:0");
-            Boolean isOn = (Boolean) params.get("output");
-            if (isOn != null) {
-              double timestamp = (double) paramsMap.get("ts");
-              OffsetDateTime offsetDateTime = OffsetDateTime.ofInstant(Instant.ofEpochMilli(Math.round(timestamp * 1000d)), UTC);
-              updateValue(isOn, offsetDateTime, devicePropertyId);
-            }
-          }
-        }
-      } catch (JsonProcessingException e) {
-        throw new UncheckedIOException(e);
+  public List<ShellyMessageRoute> getRoutes() {
+    return forDeviceTypes(getSupportedDeviceTypes())
+        .route("events", "", this::processRpcEvent)
+        .build();
+  }
+
+  private void processRpcEvent(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    if (!topic.rpc()) {
+      return;
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("{}: {}", topic.deviceId(), PayloadMapper.toString(payload));
+    }
+    try {
+      ShellyRpcNotification notification = notificationDecoder.decode(payload, SWITCH_COMPONENT);
+      if (NOTIFY_STATUS.equals(notification.method()) && notification.output() != null) {
+        ShellyPropertyHandle handle = propertyHandles.get(topic.deviceId(), SWITCH_PROPERTY_ID, RELAY_STATE, RELAY_NAME);
+        OffsetDateTime offsetDateTime = notification.hasTimestamp()
+            ? OffsetDateTime.ofInstant(Instant.ofEpochMilli(Math.round(notification.timestamp() * 1000d)), UTC)
+            : receivedAt;
+        updateValue(notification.output(), offsetDateTime, handle);
       }
-    });
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
-  private void updateValue(boolean isOn, OffsetDateTime time, DevicePropertyId devicePropertyId) {
-    relayStateValueUpdateService.setValue(isOn, time, devicePropertyId, devicePropertyId.deviceId().toString() + ": " + DISPLAY_NAME);
+  private void updateValue(boolean isOn, OffsetDateTime time, ShellyPropertyHandle handle) {
+    if (valueFilter.accept(handle.devicePropertyId(), RELAY_STATE, isOn)) {
+      relayStateValueUpdateService.setValue(isOn, time, handle.devicePropertyId(), handle.displayName());
+    }
   }
 }
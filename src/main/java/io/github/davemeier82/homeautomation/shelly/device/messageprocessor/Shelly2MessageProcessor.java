@@ -16,44 +16,78 @@
 
 package io.github.davemeier82.homeautomation.shelly.device.messageprocessor;
 
-import io.github.davemeier82.homeautomation.core.device.DeviceId;
 import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.core.device.property.RollerState;
 import io.github.davemeier82.homeautomation.core.updater.PowerValueUpdateService;
 import io.github.davemeier82.homeautomation.core.updater.RelayStateValueUpdateService;
 import io.github.davemeier82.homeautomation.core.updater.RollerPositionValueUpdateService;
 import io.github.davemeier82.homeautomation.core.updater.RollerStateValueUpdateService;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopic;
 import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import io.github.davemeier82.homeautomation.shelly.device.aggregation.ShellyPowerAggregator;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandle;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandleRegistry;
+import io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.time.OffsetDateTime;
-import java.util.Optional;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 
-import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.devicePropertyIdFromSubTopic;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.POWER;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.RELAY_STATE;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.ROLLER_POSITION;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.ROLLER_STATE;
+import static io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRoute.forDeviceTypes;
+import static io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper.equalsAsciiIgnoreCase;
+import static io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper.parseDouble;
+import static io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper.parseInt;
 import static io.github.davemeier82.homeautomation.shelly.mapper.RollerStateMapper.rollerStateFrom;
-import static java.lang.Double.parseDouble;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class Shelly2MessageProcessor implements ShellyDeviceMessageProcessor {
   private static final Logger log = LoggerFactory.getLogger(Shelly2MessageProcessor.class);
+  private static final Function<DevicePropertyId, String> RELAY_NAME = id -> id.deviceId().toString() + ": Relay" + id.id();
+  private static final Function<DevicePropertyId, String> ROLLER_STATE_NAME = id -> id.deviceId().toString() + ": Roller State";
+  private static final Function<DevicePropertyId, String> ROLLER_POSITION_NAME = id -> id.deviceId().toString() + ": Roller Position";
+  private static final Function<DevicePropertyId, String> POWER_NAME = id -> id.deviceId().toString() + ": Power";
   private final RelayStateValueUpdateService relayStateValueUpdateService;
   private final RollerStateValueUpdateService rollerStateValueUpdateService;
 
   private final RollerPositionValueUpdateService rollerPositionValueUpdateService;
 
   private final PowerValueUpdateService powerValueUpdateService;
+  private final ShellyValueFilter valueFilter;
+  private final ShellyPowerAggregator powerAggregator;
+  private final ShellyPropertyHandleRegistry propertyHandles;
 
   public Shelly2MessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService,
                                  RollerStateValueUpdateService rollerStateValueUpdateService,
                                  RollerPositionValueUpdateService rollerPositionValueUpdateService,
                                  PowerValueUpdateService powerValueUpdateService
+  ) {
+    this(relayStateValueUpdateService, rollerStateValueUpdateService, rollerPositionValueUpdateService, powerValueUpdateService, ShellyValueFilter.NONE,
+        ShellyPowerAggregator.NONE, new ShellyPropertyHandleRegistry());
+  }
+
+  public Shelly2MessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService,
+                                 RollerStateValueUpdateService rollerStateValueUpdateService,
+                                 RollerPositionValueUpdateService rollerPositionValueUpdateService,
+                                 PowerValueUpdateService powerValueUpdateService,
+                                 ShellyValueFilter valueFilter,
+                                 ShellyPowerAggregator powerAggregator,
+                                 ShellyPropertyHandleRegistry propertyHandles
   ) {
     this.relayStateValueUpdateService = relayStateValueUpdateService;
     this.rollerStateValueUpdateService = rollerStateValueUpdateService;
     this.rollerPositionValueUpdateService = rollerPositionValueUpdateService;
     this.powerValueUpdateService = powerValueUpdateService;
+    this.valueFilter = valueFilter;
+    this.powerAggregator = powerAggregator;
+    this.propertyHandles = propertyHandles;
   }
 
   @Override
@@ -62,42 +96,64 @@ public class Shelly2MessageProcessor implements ShellyDeviceMessageProcessor {
   }
 
   @Override
-  public void processMessage(String subTopic, Optional<ByteBuffer> payload, DeviceId deviceId, String devicePropertyType) {
-    payload.ifPresent(byteBuffer -> {
-      DevicePropertyId devicePropertyId = new DevicePropertyId(deviceId, devicePropertyIdFromSubTopic(subTopic).orElseThrow());
-      String message = UTF_8.decode(byteBuffer).toString();
-      log.debug("{}: {}", subTopic, message);
-      if ("relay".equals(devicePropertyType) && subTopic == null) {
-        changeStateOfRelay(devicePropertyId, message);
-      } else if ("roller".equals(devicePropertyType)) {
-        processRollerMessage(subTopic, message, devicePropertyId);
-      } else if ("power".equals(devicePropertyType)) {
-        processRelayPowerMessage(message, devicePropertyId);
-      }
-    });
+  public List<ShellyMessageRoute> getRoutes() {
+    return forDeviceTypes(getSupportedDeviceTypes())
+        .route("relay", "+", this::processRelayMessage)
+        .route("roller", "+", this::processRollerStateMessage)
+        .route("roller", "+/pos", this::processRollerPositionMessage)
+        .route("power", "+", this::processRelayPowerMessage)
+        .build();
+  }
+
+  private void processRelayMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    logPayload(topic, payload);
+    changeStateOfRelay(propertyHandles.get(topic.deviceId(), topic.subTopic(), RELAY_STATE, RELAY_NAME), payload, receivedAt);
   }
 
-  private void changeStateOfRelay(DevicePropertyId devicePropertyId, String message) {
-    if ("off".equalsIgnoreCase(message)) {
-      updateRelayValue(false, devicePropertyId);
-    } else if ("on".equalsIgnoreCase(message)) {
-      updateRelayValue(true, devicePropertyId);
+  private void changeStateOfRelay(ShellyPropertyHandle handle, ByteBuffer payload, OffsetDateTime receivedAt) {
+    if (equalsAsciiIgnoreCase(payload, "off")) {
+      updateRelayValue(false, handle, receivedAt);
+    } else if (equalsAsciiIgnoreCase(payload, "on")) {
+      updateRelayValue(true, handle, receivedAt);
     }
   }
 
-  private void updateRelayValue(boolean isOn, DevicePropertyId devicePropertyId) {
-    relayStateValueUpdateService.setValue(isOn, OffsetDateTime.now(), devicePropertyId, devicePropertyId.deviceId().toString() + ": Relay" + devicePropertyId.id());
+  private void updateRelayValue(boolean isOn, ShellyPropertyHandle handle, OffsetDateTime receivedAt) {
+    if (valueFilter.accept(handle.devicePropertyId(), RELAY_STATE, isOn)) {
+      relayStateValueUpdateService.setValue(isOn, receivedAt, handle.devicePropertyId(), handle.displayName());
+    }
+  }
+
+  private void processRollerStateMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    ShellyPropertyHandle handle = propertyHandles.get(topic.deviceId(), topic.subTopic(), ROLLER_STATE, ROLLER_STATE_NAME);
+    logPayload(topic, payload);
+    RollerState rollerState = rollerStateFrom(payload);
+    if (valueFilter.accept(handle.devicePropertyId(), ROLLER_STATE, rollerState)) {
+      rollerStateValueUpdateService.setValue(rollerState, receivedAt, handle.devicePropertyId(), handle.displayName());
+    }
   }
 
-  private void processRollerMessage(String subTopic, String message, DevicePropertyId devicePropertyId) {
-    if ("0".equals(subTopic)) {
-      rollerStateValueUpdateService.setValue(rollerStateFrom(message), OffsetDateTime.now(), devicePropertyId, devicePropertyId.deviceId().toString() + ": Roller State");
-    } else if ("0/pos".equals(subTopic)) {
-      rollerPositionValueUpdateService.setValue(Integer.parseInt(message), OffsetDateTime.now(), devicePropertyId, devicePropertyId.deviceId().toString() + ": Roller Position");
+  private void processRollerPositionMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    ShellyPropertyHandle handle = propertyHandles.get(topic.deviceId(), topic.subTopic(), ROLLER_POSITION, ROLLER_POSITION_NAME);
+    logPayload(topic, payload);
+    int position = parseInt(payload);
+    if (valueFilter.accept(handle.devicePropertyId(), ROLLER_POSITION, position)) {
+      rollerPositionValueUpdateService.setValue(position, receivedAt, handle.devicePropertyId(), handle.displayName());
     }
   }
 
-  private void processRelayPowerMessage(String message, DevicePropertyId devicePropertyId) {
-    powerValueUpdateService.setValue(parseDouble(message), OffsetDateTime.now(), devicePropertyId, devicePropertyId.deviceId().toString() + ": Power");
+  private void processRelayPowerMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    ShellyPropertyHandle handle = propertyHandles.get(topic.deviceId(), topic.subTopic(), POWER, POWER_NAME);
+    logPayload(topic, payload);
+    double power = parseDouble(payload);
+    if (!powerAggregator.aggregate(handle.devicePropertyId(), power, receivedAt, handle.displayName()) && valueFilter.accept(handle.devicePropertyId(), POWER, power)) {
+      powerValueUpdateService.setValue(power, receivedAt, handle.devicePropertyId(), handle.displayName());
+    }
+  }
+
+  private static void logPayload(ShellyTopic topic, ByteBuffer payload) {
+    if (log.isDebugEnabled()) {
+      log.debug("{}: {}", topic.subTopic(), PayloadMapper.toString(payload));
+    }
   }
 }
@@ -17,15 +17,48 @@
 package io.github.davemeier82.homeautomation.shelly.device.messageprocessor;
 
 import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopic;
 import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
 
 import java.nio.ByteBuffer;
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
+import static io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRoute.ANY_PROPERTY_TYPE;
+
+/**
+ * Processes the messages of the supported device types. A processor implements either {@link #getRoutes()} or, as
+ * before the routes existed, {@link #processMessage(String, Optional, DeviceId, String)}.
+ */
 public interface ShellyDeviceMessageProcessor {
 
   Set<ShellyDeviceType> getSupportedDeviceTypes();
 
-  void processMessage(String subTopic, Optional<ByteBuffer> payload, DeviceId deviceId, String devicePropertyType);
+  /**
+   * Routes of the messages this processor handles. The default routes every message of the supported device types
+   * without a more specific route to {@link #processMessage(String, Optional, DeviceId, String)}.
+   */
+  default List<ShellyMessageRoute> getRoutes() {
+    return ShellyMessageRoute.forDeviceTypes(getSupportedDeviceTypes())
+        .route(ANY_PROPERTY_TYPE, "", (topic, payload, receivedAt) -> processMessage(topic.subTopic(), Optional.of(payload), topic.deviceId(),
+            topic.devicePropertyType()))
+        .build();
+  }
+
+  /**
+   * The default looks up the handler in {@link #getRoutes()} on every call.
+   *
+   * @deprecated implement {@link #getRoutes()} instead, the subscriber calls the route handlers directly
+   */
+  @Deprecated
+  default void processMessage(String subTopic, Optional<ByteBuffer> payload, DeviceId deviceId, String devicePropertyType) {
+    ShellyDeviceType deviceType = (ShellyDeviceType) deviceId.type();
+    ShellyTopic topic = new ShellyTopic(deviceType, deviceId, devicePropertyType, subTopic == null ? "" : subTopic, "events".equals(devicePropertyType));
+    ShellyMessageHandler handler = new ShellyMessageRouter(List.of(this)).findHandler(topic);
+    if (handler != null) {
+      payload.ifPresent(byteBuffer -> handler.handle(topic, byteBuffer, OffsetDateTime.now()));
+    }
+  }
 }
@@ -18,32 +18,56 @@ package io.github.davemeier82.homeautomation.shelly.device.messageprocessor;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.github.davemeier82.homeautomation.core.device.DeviceId;
 import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
 import io.github.davemeier82.homeautomation.core.updater.DimmingLevelValueUpdateService;
 import io.github.davemeier82.homeautomation.core.updater.RelayStateValueUpdateService;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopic;
 import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandle;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandleRegistry;
+import io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.time.OffsetDateTime;
-import java.util.Optional;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 
-import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.devicePropertyIdFromSubTopic;
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.DIMMING_LEVEL;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.RELAY_STATE;
+import static io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRoute.forDeviceTypes;
+import static io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper.equalsAsciiIgnoreCase;
 
 public class ShellyDimmerMessageProcessor implements ShellyDeviceMessageProcessor {
   private static final Logger log = LoggerFactory.getLogger(ShellyDimmerMessageProcessor.class);
+  private static final String DIMMING_LEVEL_PROPERTY_ID = "1";
+  private static final Function<DevicePropertyId, String> RELAY_NAME = id -> id.deviceId().toString() + ": Relay" + id.id();
+  private static final Function<DevicePropertyId, String> BRIGHTNESS_NAME = id -> id.deviceId().toString() + ": Brightness";
   private final RelayStateValueUpdateService relayStateValueUpdateService;
   private final DimmingLevelValueUpdateService dimmingLevelValueUpdateService;
   private final ObjectMapper objectMapper;
+  private final ShellyValueFilter valueFilter;
+  private final ShellyPropertyHandleRegistry propertyHandles;
 
   public ShellyDimmerMessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService, DimmingLevelValueUpdateService dimmingLevelValueUpdateService, ObjectMapper objectMapper) {
+    this(relayStateValueUpdateService, dimmingLevelValueUpdateService, objectMapper, ShellyValueFilter.NONE, new ShellyPropertyHandleRegistry());
+  }
+
+  public ShellyDimmerMessageProcessor(RelayStateValueUpdateService relayStateValueUpdateService,
+                                      DimmingLevelValueUpdateService dimmingLevelValueUpdateService,
+                                      ObjectMapper objectMapper,
+                                      ShellyValueFilter valueFilter,
+                                      ShellyPropertyHandleRegistry propertyHandles
+  ) {
     this.relayStateValueUpdateService = relayStateValueUpdateService;
     this.dimmingLevelValueUpdateService = dimmingLevelValueUpdateService;
     this.objectMapper = objectMapper;
+    this.valueFilter = valueFilter;
+    this.propertyHandles = propertyHandles;
   }
 
   @Override
@@ -52,40 +76,51 @@ public class ShellyDimmerMessageProcessor implements ShellyDeviceMessageProcesso
   }
 
   @Override
-  public void processMessage(String subTopic, Optional<ByteBuffer> payload, DeviceId deviceId, String devicePropertyType) {
-    payload.ifPresent(byteBuffer -> {
-      DevicePropertyId devicePropertyId = new DevicePropertyId(deviceId, devicePropertyIdFromSubTopic(subTopic).orElseThrow());
-      String message = UTF_8.decode(byteBuffer).toString();
-      log.debug("{}: {}", subTopic, message);
-      if (subTopic.endsWith("status")) {
-        processStatusMessage(message, devicePropertyId);
-      } else if ("light".equals(devicePropertyType)) {
-        changeStateOfRelay(devicePropertyId, message);
-      }
-    });
+  public List<ShellyMessageRoute> getRoutes() {
+    return forDeviceTypes(getSupportedDeviceTypes())
+        .route("light", "+", this::processLightMessage)
+        .route("light", "+/status", this::processStatusMessage)
+        .build();
+  }
+
+  private void processLightMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    logPayload(topic, payload);
+    changeStateOfRelay(propertyHandles.get(topic.deviceId(), topic.subTopic(), RELAY_STATE, RELAY_NAME), payload, receivedAt);
   }
 
-  private void changeStateOfRelay(DevicePropertyId devicePropertyId, String message) {
-    if ("off".equalsIgnoreCase(message)) {
-      updateRelayValue(false, devicePropertyId);
-    } else if ("on".equalsIgnoreCase(message)) {
-      updateRelayValue(true, devicePropertyId);
+  private void changeStateOfRelay(ShellyPropertyHandle handle, ByteBuffer payload, OffsetDateTime receivedAt) {
+    if (equalsAsciiIgnoreCase(payload, "off")) {
+      updateRelayValue(false, handle, receivedAt);
+    } else if (equalsAsciiIgnoreCase(payload, "on")) {
+      updateRelayValue(true, handle, receivedAt);
     }
   }
 
-  private void updateRelayValue(boolean isOn, DevicePropertyId devicePropertyId) {
-    relayStateValueUpdateService.setValue(isOn, OffsetDateTime.now(), devicePropertyId, devicePropertyId.deviceId().toString() + ": Relay" + devicePropertyId.id());
+  private void updateRelayValue(boolean isOn, ShellyPropertyHandle handle, OffsetDateTime receivedAt) {
+    if (valueFilter.accept(handle.devicePropertyId(), RELAY_STATE, isOn)) {
+      relayStateValueUpdateService.setValue(isOn, receivedAt, handle.devicePropertyId(), handle.displayName());
+    }
   }
 
-  private void processStatusMessage(String message, DevicePropertyId devicePropertyId) {
+  private void processStatusMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    logPayload(topic, payload);
+    String message = PayloadMapper.toString(payload);
     try {
       StatusMessage statusMessage = objectMapper.readValue(message, StatusMessage.class);
       boolean newOnState = statusMessage.ison;
-      updateRelayValue(newOnState, devicePropertyId);
-      DevicePropertyId dimmingLevelId = new DevicePropertyId(devicePropertyId.deviceId(), "1");
-      dimmingLevelValueUpdateService.setValue(statusMessage.brightness, OffsetDateTime.now(), dimmingLevelId, devicePropertyId.deviceId().toString() + ": Brightness");
+      updateRelayValue(newOnState, propertyHandles.get(topic.deviceId(), topic.subTopic(), RELAY_STATE, RELAY_NAME), receivedAt);
+      ShellyPropertyHandle dimmingLevel = propertyHandles.get(topic.deviceId(), DIMMING_LEVEL_PROPERTY_ID, DIMMING_LEVEL, BRIGHTNESS_NAME);
+      if (valueFilter.accept(dimmingLevel.devicePropertyId(), DIMMING_LEVEL, statusMessage.brightness)) {
+        dimmingLevelValueUpdateService.setValue(statusMessage.brightness, receivedAt, dimmingLevel.devicePropertyId(), dimmingLevel.displayName());
+      }
     } catch (JsonProcessingException e) {
-      log.error("failed to unmarshall status message: {}", message, e);
+      throw new UncheckedIOException("failed to unmarshall status message: " + message, e);
+    }
+  }
+
+  private static void logPayload(ShellyTopic topic, ByteBuffer payload) {
+    if (log.isDebugEnabled()) {
+      log.debug("{}: {}", topic.subTopic(), PayloadMapper.toString(payload));
     }
   }
 
@@ -21,8 +21,17 @@ import io.github.davemeier82.homeautomation.core.updater.WindowStateValueUpdateS
 import io.github.davemeier82.homeautomation.core.updater.WindowTiltAngleValueUpdateService;
 import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
 
+import java.util.List;
 import java.util.Set;
 
+/**
+ * Owns no routes, so registering it next to a {@link ShellyDoorWindowMessageProcessor} does not collide with the
+ * routes of the Door Window 2.
+ *
+ * @deprecated {@link ShellyDoorWindowMessageProcessor} processes the messages of both Door Window versions. This
+ * processor no longer handles any message and can be removed.
+ */
+@Deprecated
 public class ShellyDoorWindow2MessageProcessor extends ShellyDoorWindowMessageProcessor {
   public ShellyDoorWindow2MessageProcessor(WindowStateValueUpdateService windowStateValueUpdateService,
                                            WindowTiltAngleValueUpdateService windowTiltAngleValueUpdateService,
@@ -35,4 +44,9 @@ public class ShellyDoorWindow2MessageProcessor extends ShellyDoorWindowMessagePr
   public Set<ShellyDeviceType> getSupportedDeviceTypes() {
     return Set.of(ShellyDeviceType.SHELLY_DOOR_WINDOW_2);
   }
+
+  @Override
+  public List<ShellyMessageRoute> getRoutes() {
+    return List.of();
+  }
 }
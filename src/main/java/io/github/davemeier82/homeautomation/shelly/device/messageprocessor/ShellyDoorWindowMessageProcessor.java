@@ -16,63 +16,122 @@
 
 package io.github.davemeier82.homeautomation.shelly.device.messageprocessor;
 
-import io.github.davemeier82.homeautomation.core.device.DeviceId;
 import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
 import io.github.davemeier82.homeautomation.core.updater.BatteryLevelUpdateService;
 import io.github.davemeier82.homeautomation.core.updater.WindowStateValueUpdateService;
 import io.github.davemeier82.homeautomation.core.updater.WindowTiltAngleValueUpdateService;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopic;
 import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.frame.ShellyFrameAssembler;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandle;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandleRegistry;
+import io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.time.OffsetDateTime;
-import java.util.Optional;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 
-import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.devicePropertyIdFromSubTopic;
-import static java.lang.Integer.parseInt;
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.BATTERY_LEVEL;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.WINDOW_STATE;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.WINDOW_TILT_ANGLE;
+import static io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRoute.forDeviceTypes;
+import static io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper.equalsAscii;
+import static io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper.parseInt;
 
 public class ShellyDoorWindowMessageProcessor implements ShellyDeviceMessageProcessor {
   private static final Logger log = LoggerFactory.getLogger(ShellyDoorWindowMessageProcessor.class);
+  private static final Function<DevicePropertyId, String> WINDOW_STATE_NAME = id -> id.deviceId().toString() + ": Window State";
+  private static final Function<DevicePropertyId, String> TILT_ANGLE_NAME = id -> id.deviceId().toString() + ": Tilt Angle";
+  private static final Function<DevicePropertyId, String> BATTERY_LEVEL_NAME = id -> id.deviceId().toString() + ": Battery Level";
   private final WindowStateValueUpdateService windowStateValueUpdateService;
   private final WindowTiltAngleValueUpdateService windowTiltAngleValueUpdateService;
   private final BatteryLevelUpdateService batteryLevelUpdateService;
+  private final ShellyValueFilter valueFilter;
+  private final ShellyFrameAssembler frameAssembler;
+  private final ShellyPropertyHandleRegistry propertyHandles;
 
   public ShellyDoorWindowMessageProcessor(WindowStateValueUpdateService windowStateValueUpdateService,
                                           WindowTiltAngleValueUpdateService windowTiltAngleValueUpdateService,
                                           BatteryLevelUpdateService batteryLevelUpdateService
+  ) {
+    this(windowStateValueUpdateService, windowTiltAngleValueUpdateService, batteryLevelUpdateService, ShellyValueFilter.NONE, ShellyFrameAssembler.IMMEDIATE,
+        new ShellyPropertyHandleRegistry());
+  }
+
+  public ShellyDoorWindowMessageProcessor(WindowStateValueUpdateService windowStateValueUpdateService,
+                                          WindowTiltAngleValueUpdateService windowTiltAngleValueUpdateService,
+                                          BatteryLevelUpdateService batteryLevelUpdateService,
+                                          ShellyValueFilter valueFilter,
+                                          ShellyFrameAssembler frameAssembler,
+                                          ShellyPropertyHandleRegistry propertyHandles
   ) {
     this.windowStateValueUpdateService = windowStateValueUpdateService;
     this.windowTiltAngleValueUpdateService = windowTiltAngleValueUpdateService;
     this.batteryLevelUpdateService = batteryLevelUpdateService;
+    this.valueFilter = valueFilter;
+    this.frameAssembler = frameAssembler;
+    this.propertyHandles = propertyHandles;
   }
 
 
   @Override
   public Set<ShellyDeviceType> getSupportedDeviceTypes() {
-    return Set.of(ShellyDeviceType.SHELLY_DOOR_WINDOW);
+    return Set.of(ShellyDeviceType.SHELLY_DOOR_WINDOW, ShellyDeviceType.SHELLY_DOOR_WINDOW_2);
   }
 
   @Override
-  public void processMessage(String subTopic, Optional<ByteBuffer> payload, DeviceId deviceId, String devicePropertyType) {
-    payload.ifPresent(byteBuffer -> {
-      DevicePropertyId devicePropertyId = new DevicePropertyId(deviceId, devicePropertyIdFromSubTopic(subTopic).orElseThrow());
-      String message = UTF_8.decode(byteBuffer).toString();
-      log.debug("{}: {}", devicePropertyId, message);
-      if ("state".equals(devicePropertyId.id())) {
-        if (message.equals("open")) {
-          windowStateValueUpdateService.setValue(true, OffsetDateTime.now(), devicePropertyId, deviceId.toString() + ": Window State");
-        } else if (message.equals("close")) {
-          windowStateValueUpdateService.setValue(false, OffsetDateTime.now(), devicePropertyId, deviceId.toString() + ": Window State");
-        }
-      } else if ("battery".equals(devicePropertyId.id())) {
-        batteryLevelUpdateService.setValue(Integer.parseInt(message), OffsetDateTime.now(), devicePropertyId, deviceId.toString() + ": Battery Level");
-      } else if ("tilt".equals(devicePropertyId.id())) {
-        windowTiltAngleValueUpdateService.setValue(parseInt(message), OffsetDateTime.now(), devicePropertyId, deviceId.toString() + ": Tilt Angle");
-      }
-    });
+  public List<ShellyMessageRoute> getRoutes() {
+    return forDeviceTypes(getSupportedDeviceTypes())
+        .route("sensor", "state", this::processStateMessage)
+        .route("sensor", "battery", this::processBatteryMessage)
+        .route("sensor", "tilt", this::processTiltMessage)
+        .build();
+  }
+
+  private void processStateMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    ShellyPropertyHandle handle = propertyHandles.get(topic.deviceId(), topic.subTopic(), WINDOW_STATE, WINDOW_STATE_NAME);
+    logPayload(handle.devicePropertyId(), payload);
+    if (equalsAscii(payload, "open")) {
+      updateWindowState(true, handle, receivedAt);
+    } else if (equalsAscii(payload, "close")) {
+      updateWindowState(false, handle, receivedAt);
+    }
+  }
+
+  private void processBatteryMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    ShellyPropertyHandle handle = propertyHandles.get(topic.deviceId(), topic.subTopic(), BATTERY_LEVEL, BATTERY_LEVEL_NAME);
+    logPayload(handle.devicePropertyId(), payload);
+    int batteryLevel = parseInt(payload);
+    if (valueFilter.accept(handle.devicePropertyId(), BATTERY_LEVEL, batteryLevel)) {
+      frameAssembler.add(handle.devicePropertyId().deviceId(), receivedAt, time -> batteryLevelUpdateService.setValue(batteryLevel, time, handle.devicePropertyId(), handle.displayName()));
+    }
+  }
+
+  private void processTiltMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    ShellyPropertyHandle handle = propertyHandles.get(topic.deviceId(), topic.subTopic(), WINDOW_TILT_ANGLE, TILT_ANGLE_NAME);
+    logPayload(handle.devicePropertyId(), payload);
+    int tiltAngle = parseInt(payload);
+    if (valueFilter.accept(handle.devicePropertyId(), WINDOW_TILT_ANGLE, tiltAngle)) {
+      frameAssembler.add(handle.devicePropertyId().deviceId(), receivedAt, time -> windowTiltAngleValueUpdateService.setValue(tiltAngle, time, handle.devicePropertyId(), handle.displayName()));
+    }
+  }
+
+  private void updateWindowState(boolean isOpen, ShellyPropertyHandle handle, OffsetDateTime receivedAt) {
+    // not framed: an opened or closed window must not wait for the end of the wake-up
+    if (valueFilter.accept(handle.devicePropertyId(), WINDOW_STATE, isOpen)) {
+      windowStateValueUpdateService.setValue(isOpen, receivedAt, handle.devicePropertyId(), handle.displayName());
+    }
+  }
+
+  private static void logPayload(DevicePropertyId devicePropertyId, ByteBuffer payload) {
+    if (log.isDebugEnabled()) {
+      log.debug("{}: {}", devicePropertyId, PayloadMapper.toString(payload));
+    }
   }
 
 }
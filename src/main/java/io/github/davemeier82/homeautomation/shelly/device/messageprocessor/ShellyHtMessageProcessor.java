@@ -16,37 +16,65 @@
 
 package io.github.davemeier82.homeautomation.shelly.device.messageprocessor;
 
-import io.github.davemeier82.homeautomation.core.device.DeviceId;
 import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
 import io.github.davemeier82.homeautomation.core.updater.BatteryLevelUpdateService;
 import io.github.davemeier82.homeautomation.core.updater.HumidityValueUpdateService;
 import io.github.davemeier82.homeautomation.core.updater.TemperatureValueUpdateService;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopic;
 import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.frame.ShellyFrameAssembler;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandle;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandleRegistry;
+import io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.time.OffsetDateTime;
-import java.util.Optional;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 
-import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.devicePropertyIdFromSubTopic;
-import static java.lang.Float.parseFloat;
-import static java.lang.Integer.parseInt;
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.BATTERY_LEVEL;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.HUMIDITY;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.TEMPERATURE;
+import static io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRoute.forDeviceTypes;
+import static io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper.parseFloat;
+import static io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper.parseInt;
 
 public class ShellyHtMessageProcessor implements ShellyDeviceMessageProcessor {
   private static final Logger log = LoggerFactory.getLogger(ShellyHtMessageProcessor.class);
+  private static final Function<DevicePropertyId, String> TEMPERATURE_NAME = id -> id.deviceId().toString() + ": Temperature";
+  private static final Function<DevicePropertyId, String> HUMIDITY_NAME = id -> id.deviceId().toString() + ": Humidity";
+  private static final Function<DevicePropertyId, String> BATTERY_LEVEL_NAME = id -> id.deviceId().toString() + ": Battery Level";
   private final TemperatureValueUpdateService temperatureValueUpdateService;
   private final HumidityValueUpdateService humidityValueUpdateService;
   private final BatteryLevelUpdateService batteryLevelUpdateService;
+  private final ShellyValueFilter valueFilter;
+  private final ShellyFrameAssembler frameAssembler;
+  private final ShellyPropertyHandleRegistry propertyHandles;
 
   public ShellyHtMessageProcessor(TemperatureValueUpdateService temperatureValueUpdateService, HumidityValueUpdateService humidityValueUpdateService,
                                   BatteryLevelUpdateService batteryLevelUpdateService
+  ) {
+    this(temperatureValueUpdateService, humidityValueUpdateService, batteryLevelUpdateService, ShellyValueFilter.NONE, ShellyFrameAssembler.IMMEDIATE,
+        new ShellyPropertyHandleRegistry());
+  }
+
+  public ShellyHtMessageProcessor(TemperatureValueUpdateService temperatureValueUpdateService,
+                                  HumidityValueUpdateService humidityValueUpdateService,
+                                  BatteryLevelUpdateService batteryLevelUpdateService,
+                                  ShellyValueFilter valueFilter,
+                                  ShellyFrameAssembler frameAssembler,
+                                  ShellyPropertyHandleRegistry propertyHandles
   ) {
     this.temperatureValueUpdateService = temperatureValueUpdateService;
     this.humidityValueUpdateService = humidityValueUpdateService;
     this.batteryLevelUpdateService = batteryLevelUpdateService;
+    this.valueFilter = valueFilter;
+    this.frameAssembler = frameAssembler;
+    this.propertyHandles = propertyHandles;
   }
 
 
@@ -56,19 +84,45 @@ public class ShellyHtMessageProcessor implements ShellyDeviceMessageProcessor {
   }
 
   @Override
-  public void processMessage(String subTopic, Optional<ByteBuffer> payload, DeviceId deviceId, String devicePropertyType) {
-    payload.ifPresent(byteBuffer -> {
-      DevicePropertyId devicePropertyId = new DevicePropertyId(deviceId, devicePropertyIdFromSubTopic(subTopic).orElseThrow());
-      String message = UTF_8.decode(byteBuffer).toString();
-      log.debug("{}: {}", devicePropertyId, message);
-      if ("temperature".equals(devicePropertyId.id())) {
-        temperatureValueUpdateService.setValue(parseFloat(message), OffsetDateTime.now(), devicePropertyId, deviceId.toString() + ": Temperature");
-      } else if ("humidity".equals(devicePropertyId.id())) {
-        humidityValueUpdateService.setValue(parseFloat(message), OffsetDateTime.now(), devicePropertyId, deviceId.toString() + ": Humidity");
-      } else if ("battery".equals(devicePropertyId.id())) {
-        batteryLevelUpdateService.setValue(parseInt(message), OffsetDateTime.now(), devicePropertyId, deviceId.toString() + ": Battery Level");
-      }
-    });
+  public List<ShellyMessageRoute> getRoutes() {
+    return forDeviceTypes(getSupportedDeviceTypes())
+        .route("sensor", "temperature", this::processTemperatureMessage)
+        .route("sensor", "humidity", this::processHumidityMessage)
+        .route("sensor", "battery", this::processBatteryMessage)
+        .build();
+  }
+
+  private void processTemperatureMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    ShellyPropertyHandle handle = propertyHandles.get(topic.deviceId(), topic.subTopic(), TEMPERATURE, TEMPERATURE_NAME);
+    logPayload(handle.devicePropertyId(), payload);
+    float temperature = parseFloat(payload);
+    if (valueFilter.accept(handle.devicePropertyId(), TEMPERATURE, temperature)) {
+      frameAssembler.add(handle.devicePropertyId().deviceId(), receivedAt, time -> temperatureValueUpdateService.setValue(temperature, time, handle.devicePropertyId(), handle.displayName()));
+    }
+  }
+
+  private void processHumidityMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    ShellyPropertyHandle handle = propertyHandles.get(topic.deviceId(), topic.subTopic(), HUMIDITY, HUMIDITY_NAME);
+    logPayload(handle.devicePropertyId(), payload);
+    float humidity = parseFloat(payload);
+    if (valueFilter.accept(handle.devicePropertyId(), HUMIDITY, humidity)) {
+      frameAssembler.add(handle.devicePropertyId().deviceId(), receivedAt, time -> humidityValueUpdateService.setValue(humidity, time, handle.devicePropertyId(), handle.displayName()));
+    }
+  }
+
+  private void processBatteryMessage(ShellyTopic topic, ByteBuffer payload, OffsetDateTime receivedAt) {
+    ShellyPropertyHandle handle = propertyHandles.get(topic.deviceId(), topic.subTopic(), BATTERY_LEVEL, BATTERY_LEVEL_NAME);
+    logPayload(handle.devicePropertyId(), payload);
+    int batteryLevel = parseInt(payload);
+    if (valueFilter.accept(handle.devicePropertyId(), BATTERY_LEVEL, batteryLevel)) {
+      frameAssembler.add(handle.devicePropertyId().deviceId(), receivedAt, time -> batteryLevelUpdateService.setValue(batteryLevel, time, handle.devicePropertyId(), handle.displayName()));
+    }
+  }
+
+  private static void logPayload(DevicePropertyId devicePropertyId, ByteBuffer payload) {
+    if (log.isDebugEnabled()) {
+      log.debug("{}: {}", devicePropertyId, PayloadMapper.toString(payload));
+    }
   }
 
 }
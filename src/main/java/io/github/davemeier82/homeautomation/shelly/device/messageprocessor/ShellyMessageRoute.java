@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.messageprocessor;
+
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Route of a message to its handler. The sub-topic pattern consists of '/' separated levels where '+' matches exactly
+ * one level (like in MQTT topic filters) and the empty pattern matches an empty sub-topic. A route for
+ * {@link #ANY_PROPERTY_TYPE} receives all messages of its device type that no other route matches.
+ */
+public record ShellyMessageRoute(ShellyDeviceType deviceType, String devicePropertyType, String subTopicPattern, ShellyMessageHandler handler) {
+
+  public static final String SINGLE_LEVEL_WILDCARD = "+";
+  public static final String ANY_PROPERTY_TYPE = "#";
+
+  public static Builder forDeviceTypes(Set<ShellyDeviceType> deviceTypes) {
+    return new Builder(deviceTypes);
+  }
+
+  public static class Builder {
+    private final Set<ShellyDeviceType> deviceTypes;
+    private final List<ShellyMessageRoute> routes = new ArrayList<>();
+
+    private Builder(Set<ShellyDeviceType> deviceTypes) {
+      this.deviceTypes = deviceTypes;
+    }
+
+    public Builder route(String devicePropertyType, String subTopicPattern, ShellyMessageHandler handler) {
+      deviceTypes.forEach(deviceType -> routes.add(new ShellyMessageRoute(deviceType, devicePropertyType, subTopicPattern, handler)));
+      return this;
+    }
+
+    public List<ShellyMessageRoute> build() {
+      return List.copyOf(routes);
+    }
+  }
+}
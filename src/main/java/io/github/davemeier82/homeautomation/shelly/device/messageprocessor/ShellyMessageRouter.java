@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.messageprocessor;
+
+import io.github.davemeier82.homeautomation.shelly.ShellyTopic;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRoute.ANY_PROPERTY_TYPE;
+import static io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRoute.SINGLE_LEVEL_WILDCARD;
+
+public class ShellyMessageRouter {
+
+  private final Map<ShellyDeviceType, Map<String, Node>> routesByDeviceType = new EnumMap<>(ShellyDeviceType.class);
+  private final Map<ShellyDeviceType, ShellyMessageHandler> fallbackByDeviceType = new EnumMap<>(ShellyDeviceType.class);
+  private final List<ShellyMessageRoute> routes;
+
+  public ShellyMessageRouter(Collection<? extends ShellyDeviceMessageProcessor> processors) {
+    List<ShellyMessageRoute> allRoutes = new ArrayList<>();
+    processors.forEach(processor -> allRoutes.addAll(processor.getRoutes()));
+    allRoutes.forEach(this::add);
+    routes = List.copyOf(allRoutes);
+  }
+
+  public ShellyMessageHandler findHandler(ShellyTopic topic) {
+    ShellyMessageHandler handler = findRoute(topic);
+    return handler != null || fallbackByDeviceType.isEmpty() ? handler : fallbackByDeviceType.get(topic.deviceType());
+  }
+
+  public boolean supportsDeviceType(ShellyDeviceType deviceType) {
+    return routesByDeviceType.containsKey(deviceType) || fallbackByDeviceType.containsKey(deviceType);
+  }
+
+  public List<ShellyMessageRoute> getRoutes() {
+    return routes;
+  }
+
+  private ShellyMessageHandler findRoute(ShellyTopic topic) {
+    Map<String, Node> routesByPropertyType = routesByDeviceType.get(topic.deviceType());
+    if (routesByPropertyType == null) {
+      return null;
+    }
+    Node root = routesByPropertyType.get(topic.devicePropertyType());
+    if (root == null) {
+      return null;
+    }
+    String subTopic = topic.subTopic();
+    return subTopic.isEmpty() ? root.handler : root.match(subTopic, 0);
+  }
+
+  private void add(ShellyMessageRoute route) {
+    if (ANY_PROPERTY_TYPE.equals(route.devicePropertyType())) {
+      if (fallbackByDeviceType.putIfAbsent(route.deviceType(), route.handler()) != null) {
+        throw new IllegalStateException("duplicate route for " + route.deviceType() + " " + ANY_PROPERTY_TYPE);
+      }
+      return;
+    }
+    Node node = routesByDeviceType.computeIfAbsent(route.deviceType(), t -> new HashMap<>())
+        .computeIfAbsent(route.devicePropertyType(), t -> new Node());
+    String pattern = route.subTopicPattern();
+    if (!pattern.isEmpty()) {
+      for (String level : pattern.split("/", -1)) {
+        node = node.child(level);
+      }
+    }
+    if (node.handler != null) {
+      throw new IllegalStateException("duplicate route for " + route.deviceType() + " " + route.devicePropertyType() + "/" + pattern);
+    }
+    node.handler = route.handler();
+  }
+
+  private static final class Node {
+    private final List<String> levels = new ArrayList<>();
+    private final List<Node> children = new ArrayList<>();
+    private Node wildcard;
+    private ShellyMessageHandler handler;
+
+    private Node child(String level) {
+      if (SINGLE_LEVEL_WILDCARD.equals(level)) {
+        if (wildcard == null) {
+          wildcard = new Node();
+        }
+        return wildcard;
+      }
+      int index = levels.indexOf(level);
+      if (index >= 0) {
+        return children.get(index);
+      }
+      Node child = new Node();
+      levels.add(level);
+      children.add(child);
+      return child;
+    }
+
+    private ShellyMessageHandler match(String subTopic, int start) {
+      int end = subTopic.indexOf('/', start);
+      boolean lastLevel = end < 0;
+      if (lastLevel) {
+        end = subTopic.length();
+      }
+      int length = end - start;
+      for (int i = 0; i < levels.size(); i++) {
+        String level = levels.get(i);
+        if (level.length() == length && subTopic.startsWith(level, start)) {
+          ShellyMessageHandler found = children.get(i).matchRemaining(subTopic, end, lastLevel);
+          if (found != null) {
+            return found;
+          }
+        }
+      }
+      return wildcard == null ? null : wildcard.matchRemaining(subTopic, end, lastLevel);
+    }
+
+    private ShellyMessageHandler matchRemaining(String subTopic, int end, boolean lastLevel) {
+      return lastLevel ? handler : match(subTopic, end + 1);
+    }
+  }
+}
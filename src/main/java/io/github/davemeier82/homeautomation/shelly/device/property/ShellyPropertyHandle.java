@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.property;
+
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind;
+
+/**
+ * Canonical device property id and display name of one value of a property. Handles are created once by the
+ * {@link ShellyPropertyHandleRegistry} and reused for every message of the property.
+ */
+public final class ShellyPropertyHandle {
+
+  private final DevicePropertyId devicePropertyId;
+  private final ShellyValueKind kind;
+  private final String displayName;
+  private final int hash;
+
+  ShellyPropertyHandle(DevicePropertyId devicePropertyId, ShellyValueKind kind, String displayName) {
+    this.devicePropertyId = devicePropertyId;
+    this.kind = kind;
+    this.displayName = displayName;
+    hash = 31 * devicePropertyId.hashCode() + kind.hashCode();
+  }
+
+  public DevicePropertyId devicePropertyId() {
+    return devicePropertyId;
+  }
+
+  public ShellyValueKind kind() {
+    return kind;
+  }
+
+  public String displayName() {
+    return displayName;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ShellyPropertyHandle other)) {
+      return false;
+    }
+    return hash == other.hash && kind == other.kind && devicePropertyId.equals(other.devicePropertyId);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return devicePropertyId + " " + kind;
+  }
+}
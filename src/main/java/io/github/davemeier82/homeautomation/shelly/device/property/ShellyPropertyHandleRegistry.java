@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.property;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.devicePropertyIdFromSubTopic;
+
+/**
+ * Hands out one {@link ShellyPropertyHandle} per device property and value kind. A lookup of a known handle does not
+ * allocate.
+ */
+public class ShellyPropertyHandleRegistry {
+
+  private static final int KIND_COUNT = ShellyValueKind.values().length;
+
+  private final Map<DevicePropertyId, PropertyHandles> handlesByDevicePropertyId = new ConcurrentHashMap<>();
+  private final Map<DeviceId, Map<String, PropertyHandles>> handlesBySubTopic = new ConcurrentHashMap<>();
+
+  /**
+   * @param subTopic    sub-topic whose first level is the id of the device property
+   * @param displayName creates the display name when the handle is created
+   */
+  public ShellyPropertyHandle get(DeviceId deviceId, String subTopic, ShellyValueKind kind, Function<DevicePropertyId, String> displayName) {
+    Map<String, PropertyHandles> deviceHandles = handlesBySubTopic.get(deviceId);
+    if (deviceHandles == null) {
+      deviceHandles = handlesBySubTopic.computeIfAbsent(deviceId, id -> new ConcurrentHashMap<>());
+    }
+    PropertyHandles propertyHandles = deviceHandles.get(subTopic);
+    if (propertyHandles == null) {
+      DevicePropertyId devicePropertyId = new DevicePropertyId(deviceId, devicePropertyIdFromSubTopic(subTopic).orElseThrow());
+      propertyHandles = deviceHandles.computeIfAbsent(subTopic, s -> handlesByDevicePropertyId.computeIfAbsent(devicePropertyId, PropertyHandles::new));
+    }
+    return propertyHandles.get(kind, displayName);
+  }
+
+  /**
+   * @return the handle of a property that received a message of the kind before, {@code null} otherwise
+   */
+  public ShellyPropertyHandle find(DevicePropertyId devicePropertyId, ShellyValueKind kind) {
+    PropertyHandles propertyHandles = handlesByDevicePropertyId.get(devicePropertyId);
+    return propertyHandles == null ? null : propertyHandles.handles.get(kind.ordinal());
+  }
+
+  public int size() {
+    return handlesByDevicePropertyId.size();
+  }
+
+  private static final class PropertyHandles {
+    private final DevicePropertyId devicePropertyId;
+    private final AtomicReferenceArray<ShellyPropertyHandle> handles = new AtomicReferenceArray<>(KIND_COUNT);
+
+    private PropertyHandles(DevicePropertyId devicePropertyId) {
+      this.devicePropertyId = devicePropertyId;
+    }
+
+    private ShellyPropertyHandle get(ShellyValueKind kind, Function<DevicePropertyId, String> displayName) {
+      ShellyPropertyHandle handle = handles.get(kind.ordinal());
+      if (handle == null) {
+        handle = new ShellyPropertyHandle(devicePropertyId, kind, displayName.apply(devicePropertyId));
+        if (!handles.compareAndSet(kind.ordinal(), null, handle)) {
+          handle = handles.get(kind.ordinal());
+        }
+      }
+      return handle;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.property.controller;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the messages of the bulk relay and roller commands. The daemon threads are only started by the first bulk
+ * command and stop when idle. It is not an {@link Executor} on purpose, so it never replaces the task executor of the
+ * application.
+ */
+public class ShellyBulkCommandExecutor implements AutoCloseable {
+
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  private final int threads;
+  private ThreadPoolExecutor executor;
+  private boolean closed;
+
+  /**
+   * @param threads number of publishing threads, 0 to publish on the calling thread
+   */
+  public ShellyBulkCommandExecutor(int threads) {
+    if (threads < 0) {
+      throw new IllegalArgumentException("threads must not be negative but was " + threads);
+    }
+    this.threads = threads;
+  }
+
+  public void execute(Runnable task) {
+    if (threads == 0) {
+      task.run();
+      return;
+    }
+    executor().execute(task);
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  private synchronized ThreadPoolExecutor executor() {
+    if (closed) {
+      throw new RejectedExecutionException("bulk command executor is closed");
+    }
+    if (executor == null) {
+      executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "shelly-command-publisher");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor.allowCoreThreadTimeOut(true);
+    }
+    return executor;
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.property.controller;
+
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.core.mqtt.MqttClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Topics and payloads of a bulk command, all computed before the first one is published.
+ */
+final class ShellyCommandBatch {
+
+  private final List<Message> messages;
+
+  ShellyCommandBatch(int expectedSize) {
+    messages = new ArrayList<>(expectedSize);
+  }
+
+  void add(DevicePropertyId devicePropertyId, String topic, String payload) {
+    messages.add(new Message(devicePropertyId, topic, payload));
+  }
+
+  /**
+   * Hands every message to the executor without waiting for the previous one to be published.
+   *
+   * @param published called with the device property of each message as soon as that message is published, independent
+   *                  of the others
+   * @return completes when all messages are published, exceptionally if any of them failed
+   */
+  CompletableFuture<Void> publish(MqttClient mqttClient, Executor executor, Consumer<DevicePropertyId> published) {
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[messages.size()];
+    for (int i = 0; i < futures.length; i++) {
+      Message message = messages.get(i);
+      futures[i] = CompletableFuture.runAsync(() -> {
+        mqttClient.publish(message.topic(), message.payload());
+        published.accept(message.devicePropertyId());
+      }, executor);
+    }
+    return CompletableFuture.allOf(futures);
+  }
+
+  private record Message(DevicePropertyId devicePropertyId, String topic, String payload) {
+  }
+}
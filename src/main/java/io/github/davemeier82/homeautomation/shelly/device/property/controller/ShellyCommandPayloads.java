@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.davemeier82.homeautomation.shelly.device.property.controller;
+
+/**
+ * Payloads of the commands with a fixed set of values, encoded once.
+ */
+final class ShellyCommandPayloads {
+
+  static final String ON = "on";
+  static final String OFF = "off";
+  static final String OPEN = "open";
+  static final String CLOSE = "close";
+  static final String STOP = "stop";
+
+  private static final String[] PERCENTAGES = new String[101];
+  private static final String[] DIMMING_LEVELS = new String[101];
+
+  static {
+    for (int percentage = 0; percentage <= 100; percentage++) {
+      PERCENTAGES[percentage] = encodePercentage(percentage);
+      DIMMING_LEVELS[percentage] = encodeDimmingLevel(percentage);
+    }
+  }
+
+  private ShellyCommandPayloads() {
+  }
+
+  static String percentage(int percentage) {
+    return percentage >= 0 && percentage <= 100 ? PERCENTAGES[percentage] : encodePercentage(percentage);
+  }
+
+  /**
+   * Payload of the light set topic of a dimmer, which is turned off at level 0.
+   */
+  static String dimmingLevel(int percentage) {
+    return percentage >= 0 && percentage <= 100 ? DIMMING_LEVELS[percentage] : encodeDimmingLevel(percentage);
+  }
+
+  private static String encodePercentage(int percentage) {
+    return String.valueOf(percentage);
+  }
+
+  private static String encodeDimmingLevel(int percentage) {
+    return "{\"brightness\": " + percentage + ", \"turn\": \"" + (percentage > 0 ? ON : OFF) + "\"}";
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.davemeier82.homeautomation.shelly.device.property.controller;
+
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.shelly.ShellyBoundedCache;
+
+import java.util.function.Function;
+
+/**
+ * Topics of the device properties a controller sent commands to, resolved on first use and kept in a
+ * {@link ShellyBoundedCache} that evicts the least recently commanded properties when full.
+ */
+final class ShellyCommandTopicCache<T> {
+
+  static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+  private final Function<DevicePropertyId, T> resolver;
+  private final ShellyBoundedCache<DevicePropertyId, T> cache;
+
+  ShellyCommandTopicCache(Function<DevicePropertyId, T> resolver) {
+    this(resolver, DEFAULT_MAXIMUM_SIZE);
+  }
+
+  ShellyCommandTopicCache(Function<DevicePropertyId, T> resolver, int maximumSize) {
+    this.resolver = resolver;
+    cache = new ShellyBoundedCache<>(maximumSize);
+  }
+
+  T get(DevicePropertyId devicePropertyId) {
+    return cache.computeIfAbsent(devicePropertyId, resolver);
+  }
+
+  int size() {
+    return cache.size();
+  }
+}
@@ -20,20 +20,33 @@ import io.github.davemeier82.homeautomation.core.device.DeviceType;
 import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
 import io.github.davemeier82.homeautomation.core.device.property.DimmerDevicePropertyController;
 import io.github.davemeier82.homeautomation.core.mqtt.MqttClient;
+import io.github.davemeier82.homeautomation.shelly.ShellyMetrics;
 import io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory;
+import io.github.davemeier82.homeautomation.shelly.device.command.ShellyCommandCoalescer;
 
 import java.util.Set;
 
+import static io.github.davemeier82.homeautomation.shelly.device.property.controller.ShellyCommandPayloads.dimmingLevel;
 import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_DIMMER;
 import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_DIMMER_2;
 
 
 public class ShellyDimmerDevicePropertyController implements DimmerDevicePropertyController {
+  private static final String CONTROLLER = "dimmer";
   private final MqttClient mqttClient;
+  private final ShellyMetrics metrics;
+  private final ShellyCommandCoalescer commandCoalescer;
+  private final ShellyCommandTopicCache<String> setTopics = new ShellyCommandTopicCache<>(ShellyDimmerDevicePropertyController::createTopic);
 
 
   public ShellyDimmerDevicePropertyController(MqttClient mqttClient) {
+    this(mqttClient, ShellyMetrics.NONE, ShellyCommandCoalescer.IMMEDIATE);
+  }
+
+  public ShellyDimmerDevicePropertyController(MqttClient mqttClient, ShellyMetrics metrics, ShellyCommandCoalescer commandCoalescer) {
     this.mqttClient = mqttClient;
+    this.metrics = metrics;
+    this.commandCoalescer = commandCoalescer;
   }
 
   private static String createTopic(DevicePropertyId devicePropertyId) {
@@ -47,8 +60,10 @@ public class ShellyDimmerDevicePropertyController implements DimmerDevicePropert
 
   @Override
   public void settDimmingLevel(DevicePropertyId devicePropertyId, Integer dimmingLevelInPercent) {
-    boolean on = dimmingLevelInPercent > 0;
     var dimmerId = new DevicePropertyId(devicePropertyId.deviceId(), "0");
-    mqttClient.publish(createTopic(dimmerId), "{\"brightness\": " + dimmingLevelInPercent + ", \"turn\": \"" + (on ? "on" : "off") + "\"}");
+    commandCoalescer.submit(dimmerId, () -> {
+      mqttClient.publish(setTopics.get(dimmerId), dimmingLevel(dimmingLevelInPercent));
+      metrics.commandPublished(CONTROLLER, "setDimmingLevel");
+    });
   }
 }
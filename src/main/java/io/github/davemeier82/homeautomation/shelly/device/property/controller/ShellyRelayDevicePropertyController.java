@@ -16,35 +16,82 @@
 
 package io.github.davemeier82.homeautomation.shelly.device.property.controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.davemeier82.homeautomation.core.device.DeviceType;
 import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
 import io.github.davemeier82.homeautomation.core.device.property.RelayDevicePropertyController;
 import io.github.davemeier82.homeautomation.core.mqtt.MqttClient;
-import io.github.davemeier82.homeautomation.shelly.ShellyRpc;
+import io.github.davemeier82.homeautomation.shelly.SequentialShellyRpcIdGenerator;
+import io.github.davemeier82.homeautomation.shelly.ShellyMetrics;
+import io.github.davemeier82.homeautomation.shelly.ShellyRpcCorrelator;
+import io.github.davemeier82.homeautomation.shelly.ShellyRpcIdGenerator;
+import io.github.davemeier82.homeautomation.shelly.ShellyRpcResponse;
+import io.github.davemeier82.homeautomation.shelly.device.command.ShellyOptimisticStates;
 
-import java.io.UncheckedIOException;
-import java.util.Map;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+import static io.github.davemeier82.homeautomation.shelly.ShellyRpcEncoder.encodeSwitchSet;
 import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.createCommandTopic;
 import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.createRpcTopic;
 import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.*;
+import static io.github.davemeier82.homeautomation.shelly.device.property.controller.ShellyCommandPayloads.OFF;
+import static io.github.davemeier82.homeautomation.shelly.device.property.controller.ShellyCommandPayloads.ON;
 
 public class ShellyRelayDevicePropertyController implements RelayDevicePropertyController {
+  private static final String CONTROLLER = "relay";
   private final MqttClient mqttClient;
-  private final ObjectMapper objectMapper;
+  private final ShellyRpcIdGenerator rpcIdGenerator;
+  private final ShellyMetrics metrics;
+  private final Executor publishExecutor;
+  private final ShellyRpcCorrelator rpcCorrelator;
+  private final ShellyOptimisticStates optimisticStates;
+  private final ShellyCommandTopicCache<RelayTopics> topics = new ShellyCommandTopicCache<>(ShellyRelayDevicePropertyController::createTopics);
 
 
+  /**
+   * @param objectMapper ignored, the RPC commands are encoded from a template without it
+   * @deprecated the object mapper argument is ignored, use
+   * {@link #ShellyRelayDevicePropertyController(MqttClient, ShellyRpcIdGenerator, ShellyMetrics, Executor, ShellyRpcCorrelator, ShellyOptimisticStates)}
+   */
+  @Deprecated
   public ShellyRelayDevicePropertyController(MqttClient mqttClient, ObjectMapper objectMapper) {
+    this(mqttClient, new SequentialShellyRpcIdGenerator(), ShellyMetrics.NONE, Runnable::run, ShellyRpcCorrelator.NONE, ShellyOptimisticStates.NONE);
+  }
+
+  /**
+   * @param publishExecutor  publishes the messages of the bulk commands
+   * @param rpcCorrelator    matches the responses of Gen2 devices to the commands with a timeout
+   * @param optimisticStates publishes the commanded state once the command is published, before the device reports it
+   */
+  public ShellyRelayDevicePropertyController(MqttClient mqttClient,
+                                             ShellyRpcIdGenerator rpcIdGenerator,
+                                             ShellyMetrics metrics,
+                                             Executor publishExecutor,
+                                             ShellyRpcCorrelator rpcCorrelator,
+                                             ShellyOptimisticStates optimisticStates
+  ) {
+    this.rpcCorrelator = rpcCorrelator;
+    this.optimisticStates = optimisticStates;
     this.mqttClient = mqttClient;
-    this.objectMapper = objectMapper;
+    this.rpcIdGenerator = rpcIdGenerator;
+    this.metrics = metrics;
+    this.publishExecutor = publishExecutor;
+  }
+
+  private static RelayTopics createTopics(DevicePropertyId devicePropertyId) {
+    if (isRpc(devicePropertyId)) {
+      String rpcTopic = createRpcTopic(devicePropertyId);
+      return new RelayTopics(rpcTopic, rpcTopic + "/response");
+    }
+    return new RelayTopics(createCommandTopic(devicePropertyId, (devicePropertyId.deviceId().type() == SHELLY_DIMMER || devicePropertyId.deviceId().type() == SHELLY_DIMMER_2) ? "light" : "relay"), null);
   }
 
-  private static String createTopic(DevicePropertyId devicePropertyId) {
-    return createCommandTopic(devicePropertyId, (devicePropertyId.deviceId().type() == SHELLY_DIMMER || devicePropertyId.deviceId().type() == SHELLY_DIMMER_2) ? "light" : "relay");
+  private static boolean isRpc(DevicePropertyId devicePropertyId) {
+    return devicePropertyId.deviceId().type().equals(SHELLY_1_MINI_GEN3);
   }
 
   @Override
@@ -54,29 +101,94 @@ public class ShellyRelayDevicePropertyController implements RelayDevicePropertyC
 
   @Override
   public void turnOn(DevicePropertyId devicePropertyId) {
-    if (devicePropertyId.deviceId().type().equals(SHELLY_1_MINI_GEN3)) {
-      String rpcTopic = createRpcTopic(devicePropertyId);
-      mqttClient.publish(rpcTopic, createRpcMessage(rpcTopic, true));
-    } else {
-      mqttClient.publish(createTopic(devicePropertyId), "on");
-    }
+    publish(devicePropertyId, true);
+    metrics.commandPublished(CONTROLLER, "turnOn");
   }
 
   @Override
   public void turnOff(DevicePropertyId devicePropertyId) {
-    if (devicePropertyId.deviceId().type().equals(SHELLY_1_MINI_GEN3)) {
-      String rpcTopic = createRpcTopic(devicePropertyId);
-      mqttClient.publish(rpcTopic, createRpcMessage(rpcTopic, false));
-    } else {
-      mqttClient.publish(createTopic(devicePropertyId), "off");
+    publish(devicePropertyId, false);
+    metrics.commandPublished(CONTROLLER, "turnOff");
+  }
+
+  /**
+   * Turns the relay on and waits for a Gen2 device to confirm it. Gen1 devices do not respond to commands, their future
+   * completes with {@code null} once the command is published.
+   *
+   * @return see {@link ShellyRpcCorrelator#expect(String, Duration)}
+   */
+  public CompletableFuture<ShellyRpcResponse> turnOn(DevicePropertyId devicePropertyId, Duration timeout) {
+    return publishAndExpect(devicePropertyId, true, timeout, "turnOn");
+  }
+
+  /**
+   * Turns the relay off, see {@link #turnOn(DevicePropertyId, Duration)}.
+   */
+  public CompletableFuture<ShellyRpcResponse> turnOff(DevicePropertyId devicePropertyId, Duration timeout) {
+    return publishAndExpect(devicePropertyId, false, timeout, "turnOff");
+  }
+
+  public CompletableFuture<Void> turnOn(Collection<DevicePropertyId> devicePropertyIds) {
+    return publishAll(devicePropertyIds, true, "turnOn");
+  }
+
+  public CompletableFuture<Void> turnOff(Collection<DevicePropertyId> devicePropertyIds) {
+    return publishAll(devicePropertyIds, false, "turnOff");
+  }
+
+  private CompletableFuture<Void> publishAll(Collection<DevicePropertyId> devicePropertyIds, boolean on, String command) {
+    ShellyCommandBatch batch = new ShellyCommandBatch(devicePropertyIds.size());
+    for (DevicePropertyId devicePropertyId : devicePropertyIds) {
+      RelayTopics relayTopics = topics.get(devicePropertyId);
+      batch.add(devicePropertyId, relayTopics.topic(), createMessage(relayTopics, on));
     }
+    return batch.publish(mqttClient, publishExecutor, devicePropertyId -> {
+      metrics.commandPublished(CONTROLLER, command);
+      optimisticStates.relayCommanded(devicePropertyId, on);
+    });
   }
 
-  private String createRpcMessage(String rpcTopic, boolean on) {
+  private CompletableFuture<ShellyRpcResponse> publishAndExpect(DevicePropertyId devicePropertyId, boolean on, Duration timeout, String command) {
+    RelayTopics relayTopics = topics.get(devicePropertyId);
+    if (!relayTopics.isRpc()) {
+      mqttClient.publish(relayTopics.topic(), on ? ON : OFF);
+      metrics.commandPublished(CONTROLLER, command);
+      optimisticStates.relayCommanded(devicePropertyId, on);
+      return CompletableFuture.completedFuture(null);
+    }
+    String rpcId = rpcIdGenerator.nextId();
+    CompletableFuture<ShellyRpcResponse> response = rpcCorrelator.expect(rpcId, timeout);
     try {
-      return objectMapper.writeValueAsString(new ShellyRpc(UUID.randomUUID().toString(), rpcTopic + "/response", "Switch.Set", Map.of("id", 0, "on", on)));
-    } catch (JsonProcessingException e) {
-      throw new UncheckedIOException(e);
+      mqttClient.publish(relayTopics.topic(), encodeSwitchSet(rpcId, relayTopics.responseTopic(), 0, on));
+    } catch (RuntimeException e) {
+      response.cancel(false);
+      return CompletableFuture.failedFuture(e);
+    }
+    metrics.commandPublished(CONTROLLER, command);
+    optimisticStates.relayCommanded(devicePropertyId, on);
+    return response;
+  }
+
+  private void publish(DevicePropertyId devicePropertyId, boolean on) {
+    RelayTopics relayTopics = topics.get(devicePropertyId);
+    mqttClient.publish(relayTopics.topic(), createMessage(relayTopics, on));
+    optimisticStates.relayCommanded(devicePropertyId, on);
+  }
+
+  private String createMessage(RelayTopics relayTopics, boolean on) {
+    if (relayTopics.isRpc()) {
+      return encodeSwitchSet(rpcIdGenerator.nextId(), relayTopics.responseTopic(), 0, on);
+    }
+    return on ? ON : OFF;
+  }
+
+  /**
+   * @param responseTopic {@code src} of the RPCs, {@code null} for Gen1 devices
+   */
+  private record RelayTopics(String topic, String responseTopic) {
+
+    boolean isRpc() {
+      return responseTopic != null;
     }
   }
 }
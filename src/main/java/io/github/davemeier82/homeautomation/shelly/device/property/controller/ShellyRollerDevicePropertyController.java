@@ -18,25 +18,61 @@ package io.github.davemeier82.homeautomation.shelly.device.property.controller;
 
 import io.github.davemeier82.homeautomation.core.device.DeviceType;
 import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.core.device.property.RollerState;
 import io.github.davemeier82.homeautomation.core.device.property.RollerDevicePropertyController;
 import io.github.davemeier82.homeautomation.core.mqtt.MqttClient;
+import io.github.davemeier82.homeautomation.shelly.ShellyMetrics;
 import io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory;
+import io.github.davemeier82.homeautomation.shelly.device.command.ShellyCommandCoalescer;
+import io.github.davemeier82.homeautomation.shelly.device.command.ShellyOptimisticStates;
 
+import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+import static io.github.davemeier82.homeautomation.core.device.property.RollerState.*;
 import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_2;
 import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_25;
+import static io.github.davemeier82.homeautomation.shelly.device.property.controller.ShellyCommandPayloads.*;
 
 public class ShellyRollerDevicePropertyController implements RollerDevicePropertyController {
+  private static final String CONTROLLER = "roller";
   private final MqttClient mqttClient;
+  private final ShellyMetrics metrics;
+  private final ShellyCommandCoalescer commandCoalescer;
+  private final Executor publishExecutor;
+  private final ShellyOptimisticStates optimisticStates;
+  private final ShellyCommandTopicCache<RollerTopics> topics = new ShellyCommandTopicCache<>(ShellyRollerDevicePropertyController::createTopics);
 
 
   public ShellyRollerDevicePropertyController(MqttClient mqttClient) {
+    this(mqttClient, ShellyMetrics.NONE, ShellyCommandCoalescer.IMMEDIATE, Runnable::run, ShellyOptimisticStates.NONE);
+  }
+
+  /**
+   * @param commandCoalescer receives the position commands. Open, close and stop are published at once and discard a
+   *                         pending position
+   * @param publishExecutor  publishes the messages of the bulk commands
+   * @param optimisticStates publishes the state an open, close or stop leads to once it is published, before the device
+   *                         reports it
+   */
+  public ShellyRollerDevicePropertyController(MqttClient mqttClient,
+                                              ShellyMetrics metrics,
+                                              ShellyCommandCoalescer commandCoalescer,
+                                              Executor publishExecutor,
+                                              ShellyOptimisticStates optimisticStates
+  ) {
+    this.optimisticStates = optimisticStates;
     this.mqttClient = mqttClient;
+    this.metrics = metrics;
+    this.commandCoalescer = commandCoalescer;
+    this.publishExecutor = publishExecutor;
   }
 
-  private static String createTopic(DevicePropertyId devicePropertyId) {
-    return ShellyTopicFactory.createCommandTopic(devicePropertyId, "roller");
+  private static RollerTopics createTopics(DevicePropertyId devicePropertyId) {
+    String command = ShellyTopicFactory.createCommandTopic(devicePropertyId, "roller");
+    return new RollerTopics(command, command + "/pos");
   }
 
   @Override
@@ -46,21 +82,73 @@ public class ShellyRollerDevicePropertyController implements RollerDevicePropert
 
   @Override
   public void open(DevicePropertyId devicePropertyId) {
-    mqttClient.publish(createTopic(devicePropertyId), "open");
+    publish(devicePropertyId, false, OPEN, OPENING, "open");
   }
 
   @Override
   public void close(DevicePropertyId devicePropertyId) {
-    mqttClient.publish(createTopic(devicePropertyId), "close");
+    publish(devicePropertyId, false, CLOSE, CLOSING, "close");
   }
 
   @Override
   public void stop(DevicePropertyId devicePropertyId) {
-    mqttClient.publish(createTopic(devicePropertyId), "stop");
+    publish(devicePropertyId, false, STOP, IDLE, "stop");
   }
 
   @Override
   public void setPosition(DevicePropertyId devicePropertyId, int percentage) {
-    mqttClient.publish(createTopic(devicePropertyId) + "/pos", String.valueOf(percentage));
+    publish(devicePropertyId, true, percentage(percentage), null, "setPosition");
+  }
+
+  public CompletableFuture<Void> open(Collection<DevicePropertyId> devicePropertyIds) {
+    return publishAll(devicePropertyIds, false, OPEN, OPENING, "open");
+  }
+
+  public CompletableFuture<Void> close(Collection<DevicePropertyId> devicePropertyIds) {
+    return publishAll(devicePropertyIds, false, CLOSE, CLOSING, "close");
+  }
+
+  public CompletableFuture<Void> stop(Collection<DevicePropertyId> devicePropertyIds) {
+    return publishAll(devicePropertyIds, false, STOP, IDLE, "stop");
+  }
+
+  public CompletableFuture<Void> setPosition(Collection<DevicePropertyId> devicePropertyIds, int percentage) {
+    return publishAll(devicePropertyIds, true, percentage(percentage), null, "setPosition");
+  }
+
+  private CompletableFuture<Void> publishAll(Collection<DevicePropertyId> devicePropertyIds, boolean position, String message, RollerState expected, String command) {
+    ShellyCommandBatch batch = new ShellyCommandBatch(devicePropertyIds.size());
+    for (DevicePropertyId devicePropertyId : devicePropertyIds) {
+      commandCoalescer.cancel(devicePropertyId);
+      batch.add(devicePropertyId, topics.get(devicePropertyId).get(position), message);
+    }
+    return batch.publish(mqttClient, publishExecutor, devicePropertyId -> {
+      metrics.commandPublished(CONTROLLER, command);
+      if (expected != null) {
+        optimisticStates.rollerCommanded(devicePropertyId, expected);
+      }
+    });
+  }
+
+  private void publish(DevicePropertyId devicePropertyId, boolean position, String message, RollerState expected, String command) {
+    String topic = topics.get(devicePropertyId).get(position);
+    if (position) {
+      commandCoalescer.submit(devicePropertyId, () -> {
+        mqttClient.publish(topic, message);
+        metrics.commandPublished(CONTROLLER, command);
+      });
+      return;
+    }
+    commandCoalescer.cancel(devicePropertyId);
+    mqttClient.publish(topic, message);
+    metrics.commandPublished(CONTROLLER, command);
+    optimisticStates.rollerCommanded(devicePropertyId, expected);
+  }
+
+  private record RollerTopics(String command, String position) {
+
+    String get(boolean position) {
+      return position ? this.position : command;
+    }
   }
 }
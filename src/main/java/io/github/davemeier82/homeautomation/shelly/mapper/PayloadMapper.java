@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.mapper;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads scalar payloads directly from the buffer between its position and limit. None of the methods change the
+ * position of the buffer.
+ */
+public final class PayloadMapper {
+
+  private static final int MAX_FAST_PATH_DIGITS = 15;
+  private static final double[] DOUBLE_POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  private static final float[] FLOAT_POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+  private static final long MAX_EXACT_FLOAT_MANTISSA = 1L << 24;
+  private static final long FRACTION_DIGITS_FACTOR = 32;
+  private static final long NOT_A_PLAIN_DECIMAL = Long.MIN_VALUE;
+
+  private PayloadMapper() {
+  }
+
+  public static boolean equalsAscii(ByteBuffer payload, String keyword) {
+    return matches(payload, keyword, false);
+  }
+
+  public static boolean equalsAsciiIgnoreCase(ByteBuffer payload, String keyword) {
+    return matches(payload, keyword, true);
+  }
+
+  public static int parseInt(ByteBuffer payload) {
+    long value = parseLong(payload);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw new NumberFormatException("value out of int range: " + toString(payload));
+    }
+    return (int) value;
+  }
+
+  public static long parseLong(ByteBuffer payload) {
+    int index = payload.position();
+    int limit = payload.limit();
+    boolean negative = false;
+    if (index < limit && (payload.get(index) == '-' || payload.get(index) == '+')) {
+      negative = payload.get(index) == '-';
+      index++;
+    }
+    if (index == limit || limit - index > 18) {
+      return Long.parseLong(toString(payload));
+    }
+    long value = 0;
+    for (; index < limit; index++) {
+      int digit = payload.get(index) - '0';
+      if (digit < 0 || digit > 9) {
+        throw new NumberFormatException("not a number: " + toString(payload));
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  public static double parseDouble(ByteBuffer payload) {
+    long decimal = scanDecimal(payload);
+    int fractionDigits = fractionDigitsOf(decimal);
+    if (decimal == NOT_A_PLAIN_DECIMAL || fractionDigits >= DOUBLE_POWERS_OF_TEN.length) {
+      return Double.parseDouble(toString(payload));
+    }
+    return mantissaOf(decimal) / DOUBLE_POWERS_OF_TEN[fractionDigits];
+  }
+
+  public static float parseFloat(ByteBuffer payload) {
+    long decimal = scanDecimal(payload);
+    int fractionDigits = fractionDigitsOf(decimal);
+    if (decimal == NOT_A_PLAIN_DECIMAL || Math.abs(mantissaOf(decimal)) > MAX_EXACT_FLOAT_MANTISSA || fractionDigits >= FLOAT_POWERS_OF_TEN.length) {
+      return Float.parseFloat(toString(payload));
+    }
+    return mantissaOf(decimal) / FLOAT_POWERS_OF_TEN[fractionDigits];
+  }
+
+  public static String toString(ByteBuffer payload) {
+    return UTF_8.decode(payload.duplicate()).toString();
+  }
+
+  private static boolean matches(ByteBuffer payload, String keyword, boolean ignoreCase) {
+    int position = payload.position();
+    if (payload.limit() - position != keyword.length()) {
+      return false;
+    }
+    for (int i = 0; i < keyword.length(); i++) {
+      int b = payload.get(position + i);
+      int c = keyword.charAt(i);
+      if (b != c && (!ignoreCase || toLowerCaseAscii(b) != toLowerCaseAscii(c))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int toLowerCaseAscii(int c) {
+    return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+  }
+
+  // signed mantissa * FRACTION_DIGITS_FACTOR + number of fraction digits, or NOT_A_PLAIN_DECIMAL if the payload cannot be converted exactly
+  private static long scanDecimal(ByteBuffer payload) {
+    int index = payload.position();
+    int limit = payload.limit();
+    boolean negative = false;
+    if (index < limit && (payload.get(index) == '-' || payload.get(index) == '+')) {
+      negative = payload.get(index) == '-';
+      index++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = -1;
+    for (; index < limit; index++) {
+      byte b = payload.get(index);
+      if (b == '.' && fractionDigits < 0) {
+        fractionDigits = 0;
+      } else if (b >= '0' && b <= '9') {
+        if (++digits > MAX_FAST_PATH_DIGITS) {
+          return NOT_A_PLAIN_DECIMAL;
+        }
+        mantissa = mantissa * 10 + (b - '0');
+        if (fractionDigits >= 0) {
+          fractionDigits++;
+        }
+      } else {
+        return NOT_A_PLAIN_DECIMAL;
+      }
+    }
+    if (digits == 0 || (negative && mantissa == 0)) {
+      return NOT_A_PLAIN_DECIMAL;
+    }
+    long decimal = mantissa * FRACTION_DIGITS_FACTOR + Math.max(fractionDigits, 0);
+    return negative ? -decimal : decimal;
+  }
+
+  private static long mantissaOf(long decimal) {
+    return decimal / FRACTION_DIGITS_FACTOR;
+  }
+
+  private static int fractionDigitsOf(long decimal) {
+    return (int) Math.abs(decimal % FRACTION_DIGITS_FACTOR);
+  }
+}
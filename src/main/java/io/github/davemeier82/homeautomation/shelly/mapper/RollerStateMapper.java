@@ -18,7 +18,10 @@ package io.github.davemeier82.homeautomation.shelly.mapper;
 
 import io.github.davemeier82.homeautomation.core.device.property.RollerState;
 
+import java.nio.ByteBuffer;
+
 import static io.github.davemeier82.homeautomation.core.device.property.RollerState.*;
+import static io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper.equalsAscii;
 
 public final class RollerStateMapper {
   private RollerStateMapper() {
@@ -32,4 +35,14 @@ public final class RollerStateMapper {
     };
   }
 
+  public static RollerState rollerStateFrom(ByteBuffer payload) {
+    if (equalsAscii(payload, "open")) {
+      return OPENING;
+    }
+    if (equalsAscii(payload, "close")) {
+      return CLOSING;
+    }
+    return IDLE;
+  }
+
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import org.junit.jupiter.api.Test;
+
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_25;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class CachingShellyTopicParserTest {
+
+  @Test
+  public void countsHitsAndMisses() {
+    CachingShellyTopicParser parser = new CachingShellyTopicParser(10);
+    DeviceId deviceId = parser.parseTopic("shellies/shellyswitch25-E01234/relay/0/power").orElseThrow().deviceId();
+    assertEquals(new DeviceId("E01234", SHELLY_25), deviceId);
+    parser.parseTopic("shellies/shellyswitch25-E01234/relay/0/power");
+    parser.parseTopic("shellies/shellyswitch25-E01234/relay/0/power");
+    assertEquals(2, parser.getHitCount());
+    assertEquals(1, parser.getMissCount());
+    assertEquals(1, parser.size());
+  }
+
+  @Test
+  public void doesNotCacheUnparseableTopics() {
+    CachingShellyTopicParser parser = new CachingShellyTopicParser(10);
+    assertFalse(parser.parseTopic("shellies/announce").isPresent());
+    assertFalse(parser.parseTopic("shellies/announce").isPresent());
+    assertEquals(0, parser.size());
+    assertEquals(2, parser.getMissCount());
+  }
+
+  @Test
+  public void evictsTopicNotUsedSinceItWasAddedWhenFull() {
+    CachingShellyTopicParser parser = new CachingShellyTopicParser(2);
+    parser.parseTopic("shellies/shellyswitch25-E01234/relay/0");
+    parser.parseTopic("shellies/shellyswitch25-E01234/relay/1");
+    parser.parseTopic("shellies/shellyswitch25-E01234/relay/0");
+    parser.parseTopic("shellies/shellyswitch25-E01234/roller/0");
+    assertEquals(2, parser.size());
+    assertEquals(1, parser.getEvictionCount());
+    parser.parseTopic("shellies/shellyswitch25-E01234/relay/0");
+    parser.parseTopic("shellies/shellyswitch25-E01234/roller/0");
+    assertEquals(3, parser.getHitCount());
+  }
+}
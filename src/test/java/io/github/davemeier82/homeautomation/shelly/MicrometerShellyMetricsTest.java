@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.repositories.DeviceRepository;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceFactory;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.davemeier82.homeautomation.shelly.MicrometerShellyMetrics.*;
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_1;
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_25;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MicrometerShellyMetricsTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final MicrometerShellyMetrics metrics = new MicrometerShellyMetrics(meterRegistry);
+
+  @Test
+  public void messagesAreTaggedWithDeviceTypeAndPropertyType() {
+    ShellyTopic relay = new ShellyTopic(SHELLY_25, new DeviceId("AABBCC", SHELLY_25), "relay", "0", false);
+    ShellyTopic otherRelay = new ShellyTopic(SHELLY_25, new DeviceId("DDEEFF", SHELLY_25), "relay", "1", false);
+    metrics.messageReceived(relay);
+    metrics.messageReceived(otherRelay);
+    metrics.messageProcessed(relay, 1500);
+    metrics.payloadFailed(otherRelay);
+
+    assertEquals(2.0, meterRegistry.get(MESSAGES_RECEIVED).tag("type", "SHELLY_25").tag("property", "relay").counter().count());
+    assertEquals(1, meterRegistry.get(MESSAGES_PROCESSING).tag("type", "SHELLY_25").tag("property", "relay").timer().count());
+    assertEquals(1500.0, meterRegistry.get(MESSAGES_PROCESSING).tag("type", "SHELLY_25").tag("property", "relay").timer().totalTime(TimeUnit.NANOSECONDS));
+    assertEquals(1.0, meterRegistry.get(PAYLOADS_FAILED).tag("type", "SHELLY_25").tag("property", "relay").counter().count());
+  }
+
+  @Test
+  public void commandsAreTaggedWithControllerAndCommand() {
+    metrics.commandPublished("relay", "turnOn");
+    metrics.commandPublished("relay", "turnOn");
+    metrics.commandPublished("roller", "setPosition");
+
+    assertEquals(2.0, meterRegistry.get(COMMANDS_PUBLISHED).tag("controller", "relay").tag("command", "turnOn").counter().count());
+    assertEquals(1.0, meterRegistry.get(COMMANDS_PUBLISHED).tag("controller", "roller").tag("command", "setPosition").counter().count());
+  }
+
+  @Test
+  public void subscriberCountsRejectedTopics() {
+    ShellyMqttSubscriber subscriber = new ShellyMqttSubscriber(new ShellyDeviceRegistry(new ShellyDeviceFactory(), emptyDeviceRepository(), metrics), Set.of(),
+        ShellyTopicFactory::parseTopic, ShellyMessageDispatcher.DIRECT, Clock.systemUTC(), metrics, ShellyTopicSubscriptions.ALL, ShellyTopicPreFilter.NONE);
+    Optional<ByteBuffer> payload = Optional.of(ByteBuffer.wrap(new byte[]{'1'}));
+    subscriber.processMessage("shellies/announce", payload);
+    subscriber.processMessage("shellies/shelly1-AABBCC/relay/0", payload);
+
+    assertEquals(1.0, meterRegistry.get(TOPICS_UNPARSEABLE).counter().count());
+    assertEquals(1.0, meterRegistry.get(TOPICS_UNROUTED).tag("type", SHELLY_1.name()).counter().count());
+    assertEquals(1.0, meterRegistry.get(DEVICES_CREATED).tag("type", SHELLY_1.name()).counter().count());
+  }
+
+  private static DeviceRepository emptyDeviceRepository() {
+    return (DeviceRepository) Proxy.newProxyInstance(MicrometerShellyMetricsTest.class.getClassLoader(), new Class<?>[]{DeviceRepository.class},
+        (proxy, method, args) -> method.getReturnType() == Optional.class ? Optional.empty() : null);
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RejectingShellyTopicPreFilterTest {
+
+  private final RejectingShellyTopicPreFilter filter = new RejectingShellyTopicPreFilter(2, Duration.ofMinutes(1));
+
+  @Test
+  public void acceptTopicsOfSupportedDevices() {
+    assertTrue(filter.accept("shellies/shelly1-22F000/relay/0"));
+    assertTrue(filter.accept("shellies/shellyswitch25-E01234/roller/0/pos"));
+    assertTrue(filter.accept("shellies/shellydimmer2-40915156AC0F/light/0/status"));
+    assertTrue(filter.accept("shellies/shelly1minig3-1234567abcde/events/rpc"));
+    assertEquals(0, filter.getEchoCount());
+    assertEquals(0, filter.getUnsupportedCount());
+  }
+
+  @Test
+  public void rejectCommandEchoes() {
+    assertFalse(filter.accept("shellies/shelly1-22F000/relay/0/command"));
+    assertFalse(filter.accept("shellies/shellyswitch25-E01234/roller/0/command/pos"));
+    assertFalse(filter.accept("shellies/shellydimmer2-40915156AC0F/light/0/set"));
+    assertFalse(filter.accept("shellies/shelly1minig3-1234567abcde/rpc"));
+    assertFalse(filter.accept("shellies/shelly1minig3-1234567abcde/rpc/response/rpc"));
+    assertEquals(5, filter.getEchoCount());
+  }
+
+  @Test
+  public void rejectAndRememberUnsupportedDeviceTypes() {
+    assertFalse(filter.accept("shellies/shellyplug-s-AABBCC/relay/0"));
+    assertFalse(filter.accept("shellies/shellyplug-s-DDEEFF/relay/0/power"));
+    assertFalse(filter.accept("shellies/shellyem-AABBCC/emeter/0/power"));
+    assertEquals(3, filter.getUnsupportedCount());
+    assertEquals(2, filter.size());
+
+    assertFalse(filter.accept("shellies/shellybulb-AABBCC/color/0"));
+    assertEquals(2, filter.size());
+  }
+
+  @Test
+  public void splitTypeAtFirstDashLikeTheParser() {
+    assertFalse(filter.accept("shellies/shellyplug-s-AABBCC/relay/0"));
+    assertTrue(filter.accept("shellies/shelly1-22F000-extra/relay/0"));
+    assertEquals(1, filter.size());
+  }
+
+  @Test
+  public void leaveOtherTopicsToTheParser() {
+    assertTrue(filter.accept("shellies/announce"));
+    assertTrue(filter.accept("shellies/command"));
+    assertTrue(filter.accept("other/shellyplug-s-AABBCC/relay/0"));
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.davemeier82.homeautomation.core.device.Device;
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.mqtt.MqttClient;
+import io.github.davemeier82.homeautomation.core.repositories.DeviceRepository;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceFactory;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_1;
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_25;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShellyAnnounceSubscriberTest {
+
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+  private final List<String> saved = new CopyOnWriteArrayList<>();
+  private final List<String> published = new CopyOnWriteArrayList<>();
+  private final MqttClient mqttClient = (topic, message) -> published.add(topic + " " + message);
+  private final ShellyDeviceRegistry registry = new ShellyDeviceRegistry(new ShellyDeviceFactory(), deviceRepository());
+  private final ShellyAnnounceSubscriber subscriber = new ShellyAnnounceSubscriber(registry, mqttClient, new ObjectMapper(), Duration.ZERO,
+      Duration.ofMillis(20), executor);
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void requestsAnnouncementsOnStart() throws InterruptedException {
+    subscriber.start();
+    Thread.sleep(100);
+
+    assertEquals(List.of("shellies/command announce"), published);
+  }
+
+  @Test
+  public void registersAnnouncedDevicesInOneBatch() throws InterruptedException {
+    subscriber.processMessage("shellies/announce", payload("{\"id\":\"shellyswitch25-98CDAC1F2A3B\",\"model\":\"SHSW-25\",\"fw_ver\":\"1.14.0\"}"));
+    subscriber.processMessage("shellies/announce", payload("{\"id\":\"shelly1-B929CC\",\"model\":\"SHSW-1\"}"));
+    subscriber.processMessage("shellies/announce", payload("{\"id\":\"shelly1-B929CC\",\"model\":\"SHSW-1\"}"));
+    subscriber.processMessage("shellies/announce", payload("{\"id\":\"shellyplug-s-0A1B2C\"}"));
+    assertEquals(2, subscriber.getPendingCount());
+    Thread.sleep(200);
+
+    assertEquals(0, subscriber.getPendingCount());
+    assertTrue(registry.isKnown(new DeviceId("98CDAC1F2A3B", SHELLY_25)));
+    assertTrue(registry.isKnown(new DeviceId("B929CC", SHELLY_1)));
+    assertEquals(2, saved.size());
+  }
+
+  private DeviceRepository deviceRepository() {
+    return (DeviceRepository) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DeviceRepository.class}, (proxy, method, args) -> {
+      if (method.getName().equals("save")) {
+        saved.add(((Device) args[0]).getId());
+        return null;
+      }
+      return method.getReturnType() == Optional.class ? Optional.empty() : null;
+    });
+  }
+
+  private static Optional<ByteBuffer> payload(String json) {
+    return Optional.of(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+  }
+}
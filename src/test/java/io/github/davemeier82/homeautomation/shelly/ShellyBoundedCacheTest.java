@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShellyBoundedCacheTest {
+
+  private final ShellyBoundedCache<String, String> cache = new ShellyBoundedCache<>(3);
+
+  @Test
+  public void evictsOneUnreferencedEntryWhenFull() {
+    cache.putIfAbsent("a", "A");
+    cache.putIfAbsent("b", "B");
+    cache.putIfAbsent("c", "C");
+    cache.get("a");
+    cache.get("c");
+
+    cache.putIfAbsent("d", "D");
+
+    assertEquals(3, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    assertNull(cache.get("b"));
+    assertEquals("A", cache.get("a"));
+    assertEquals("C", cache.get("c"));
+    assertEquals("D", cache.get("d"));
+  }
+
+  @Test
+  public void givesEveryEntryASecondChance() {
+    cache.putIfAbsent("a", "A");
+    cache.putIfAbsent("b", "B");
+    cache.putIfAbsent("c", "C");
+    cache.get("a");
+    cache.get("b");
+    cache.get("c");
+
+    cache.putIfAbsent("d", "D");
+
+    assertEquals(1, cache.getEvictionCount());
+    assertNull(cache.get("a"));
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void keepsFirstValueOfKey() {
+    assertEquals("A", cache.putIfAbsent("a", "A"));
+    assertEquals("A", cache.putIfAbsent("a", "other"));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void loadsMissingValuesOnce() {
+    AtomicInteger loaded = new AtomicInteger();
+    cache.computeIfAbsent("a", key -> key + loaded.incrementAndGet());
+    assertEquals("a1", cache.computeIfAbsent("a", key -> key + loaded.incrementAndGet()));
+    assertEquals(1, loaded.get());
+  }
+
+  @Test
+  public void clearDoesNotCountAsEviction() {
+    cache.putIfAbsent("a", "A");
+    cache.clear();
+    cache.putIfAbsent("b", "B");
+    assertEquals(1, cache.size());
+    assertEquals(0, cache.getEvictionCount());
+  }
+
+  @Test
+  public void rejectNonPositiveMaximumSize() {
+    assertThrows(IllegalArgumentException.class, () -> new ShellyBoundedCache<>(0));
+  }
+}
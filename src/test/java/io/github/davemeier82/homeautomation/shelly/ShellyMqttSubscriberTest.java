@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.davemeier82.homeautomation.core.device.Device;
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.repositories.DeviceRepository;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceFactory;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceRegistry;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.Shelly1MiniGen3MessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.Shelly25MessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyDeviceMessageProcessor;
+import io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRouter;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_25;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShellyMqttSubscriberTest {
+
+  private final Set<ShellyDeviceMessageProcessor> processors = Set.of(
+      new Shelly25MessageProcessor(null, null, null, null),
+      new Shelly1MiniGen3MessageProcessor(null, new ObjectMapper()));
+
+  @Test
+  public void subscribeToAllShellyTopicsByDefault() {
+    ShellyMqttSubscriber subscriber = new ShellyMqttSubscriber(new ShellyDeviceFactory(), null, processors);
+    assertEquals("shellies/#", subscriber.getTopic());
+    assertEquals(List.of(), subscriber.getAdditionalTopicFilters());
+  }
+
+  @Test
+  public void subscribeToTopicsOfRoutes() {
+    ShellyMqttSubscriber subscriber = new ShellyMqttSubscriber(new ShellyDeviceRegistry(new ShellyDeviceFactory(), null), processors, ShellyTopicFactory::parseTopic,
+        ShellyMessageDispatcher.DIRECT, Clock.systemUTC(), ShellyMetrics.NONE, ShellyTopicSubscriptions.TARGETED, ShellyTopicPreFilter.NONE);
+    List<String> topicFilters = new ArrayList<>();
+    topicFilters.add(subscriber.getTopic());
+    topicFilters.addAll(subscriber.getAdditionalTopicFilters());
+
+    List<String> expected = new ShellyMessageRouter(processors).getRoutes().stream()
+        .map(route -> ShellyTopicFactory.createTopicFilter(route.devicePropertyType(), route.subTopicPattern()))
+        .distinct()
+        .sorted()
+        .toList();
+    assertEquals(expected, topicFilters);
+    assertTrue(topicFilters.contains("shellies/+/events/rpc"));
+    assertTrue(topicFilters.contains("shellies/+/roller/+/pos"));
+  }
+
+  @Test
+  public void subscribeToAdditionalTopicFilters() {
+    ShellyTopicSubscriptions subscriptions = new ShellyTopicSubscriptions(true, List.of("shellies/+/input/+"));
+    ShellyMqttSubscriber subscriber = new ShellyMqttSubscriber(new ShellyDeviceRegistry(new ShellyDeviceFactory(), null), processors, ShellyTopicFactory::parseTopic,
+        ShellyMessageDispatcher.DIRECT, Clock.systemUTC(), ShellyMetrics.NONE, subscriptions, ShellyTopicPreFilter.NONE);
+
+    assertTrue(subscriber.getAdditionalTopicFilters().contains("shellies/+/input/+"));
+  }
+
+  @Test
+  public void subscribeToAllTopicsOfLegacyProcessors() {
+    ShellyDeviceMessageProcessor legacy = new ShellyDeviceMessageProcessor() {
+      @Override
+      public Set<ShellyDeviceType> getSupportedDeviceTypes() {
+        return Set.of(SHELLY_25);
+      }
+
+      @Override
+      public void processMessage(String subTopic, Optional<ByteBuffer> payload, DeviceId deviceId, String devicePropertyType) {
+      }
+    };
+    List<String> topicFilters = ShellyTopicSubscriptions.TARGETED.topicFilters(new ShellyMessageRouter(List.of(legacy)).getRoutes());
+
+    assertEquals(List.of("shellies/+/#"), topicFilters);
+  }
+
+  @Test
+  public void subscribeToAllTopicsWithoutRoutes() {
+    assertEquals(List.of("shellies/#"), ShellyTopicSubscriptions.TARGETED.topicFilters(List.of()));
+    assertEquals(List.of("shellies/#"), ShellyTopicSubscriptions.ALL.topicFilters(new ShellyMessageRouter(processors).getRoutes()));
+  }
+
+  @Test
+  public void registerDeviceOfUnroutedTopic() {
+    List<String> saved = new CopyOnWriteArrayList<>();
+    ShellyMqttSubscriber subscriber = new ShellyMqttSubscriber(new ShellyDeviceFactory(), deviceRepository(saved), processors);
+
+    subscriber.processMessage("shellies/shellyswitch25-E01234/input/0", Optional.of(ByteBuffer.wrap("1".getBytes(StandardCharsets.US_ASCII))));
+
+    assertEquals(List.of("E01234"), saved);
+  }
+
+  private static DeviceRepository deviceRepository(List<String> saved) {
+    return (DeviceRepository) Proxy.newProxyInstance(ShellyMqttSubscriberTest.class.getClassLoader(), new Class<?>[]{DeviceRepository.class}, (proxy, method, args) -> {
+      if (method.getName().equals("save")) {
+        saved.add(((Device) args[0]).getId());
+        return null;
+      }
+      return method.getReturnType() == Optional.class ? Optional.empty() : null;
+    });
+  }
+}
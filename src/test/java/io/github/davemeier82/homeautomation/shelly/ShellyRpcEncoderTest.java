@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.github.davemeier82.homeautomation.shelly.ShellyRpcEncoder.encodeSwitchSet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShellyRpcEncoderTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  public void encodeSwitchSetRequest() throws JsonProcessingException {
+    String json = encodeSwitchSet("a1b2-7", "shellies/shelly1minig3-1234567abcde/rpc/response", 0, true);
+    assertEquals("{\"id\":\"a1b2-7\",\"src\":\"shellies/shelly1minig3-1234567abcde/rpc/response\",\"method\":\"Switch.Set\",\"params\":{\"id\":0,\"on\":true}}", json);
+    assertEquals(new ShellyRpc("a1b2-7", "shellies/shelly1minig3-1234567abcde/rpc/response", "Switch.Set", Map.of("id", 0, "on", true)),
+        objectMapper.readValue(json, ShellyRpc.class));
+  }
+
+  @Test
+  public void escapeStrings() throws JsonProcessingException {
+    String json = encodeSwitchSet("quote\"id", "back\\slash", 1, false);
+    ShellyRpc rpc = objectMapper.readValue(json, ShellyRpc.class);
+    assertEquals("quote\"id", rpc.id());
+    assertEquals("back\\slash", rpc.src());
+  }
+
+  @Test
+  public void generateSequentialIds() {
+    SequentialShellyRpcIdGenerator generator = new SequentialShellyRpcIdGenerator("node");
+    assertEquals("node-1", generator.nextId());
+    assertEquals("node-2", generator.nextId());
+  }
+}
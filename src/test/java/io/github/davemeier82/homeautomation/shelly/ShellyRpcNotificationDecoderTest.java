@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ShellyRpcNotificationDecoderTest {
+
+  private final ShellyRpcNotificationDecoder decoder = new ShellyRpcNotificationDecoder(new JsonFactory());
+
+  @Test
+  public void decodeNotifyStatus() throws IOException {
+    String message = "{\"src\":\"shelly1minig3-1234567abcde\",\"dst\":\"shellies/shelly1minig3-1234567abcde/events\",\"method\":\"NotifyStatus\","
+        + "\"params\":{\"ts\":1716544800.12,\"switch:1\":{\"output\":false},\"switch:0\":{\"id\":0,\"apower\":0.0,\"output\":true,\"temperature\":{\"tC\":41.2}}}}";
+    ShellyRpcNotification notification = decoder.decode(payload(message), "switch:0");
+    assertEquals(new ShellyRpcNotification("NotifyStatus", 1716544800.12, true), notification);
+  }
+
+  @Test
+  public void decodeNotificationWithoutComponent() throws IOException {
+    ShellyRpcNotification notification = decoder.decode(payload("{\"method\":\"NotifyEvent\",\"params\":{\"events\":[{\"component\":\"sys\"}]}}"), "switch:0");
+    assertEquals("NotifyEvent", notification.method());
+    assertNull(notification.output());
+    assertFalse(notification.hasTimestamp());
+  }
+
+  @Test
+  public void decodeDirectBuffer() throws IOException {
+    byte[] bytes = "{\"method\":\"NotifyStatus\",\"params\":{\"switch:0\":{\"output\":false}}}".getBytes(UTF_8);
+    ByteBuffer payload = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    assertEquals(false, decoder.decode(payload, "switch:0").output());
+    assertEquals(0, payload.position());
+  }
+
+  private static ByteBuffer payload(String message) {
+    return ByteBuffer.wrap(message.getBytes(UTF_8));
+  }
+}
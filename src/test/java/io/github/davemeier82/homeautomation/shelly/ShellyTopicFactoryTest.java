@@ -22,6 +22,8 @@ import org.junit.jupiter.api.Test;
 import java.util.Optional;
 
 import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.*;
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_1_MINI_GEN3;
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_25;
 import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_HT;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -71,4 +73,35 @@ class ShellyTopicFactoryTest {
   public void extractDevicePropertyType() {
     assertEquals("roller", devicePropertyType("shellies/shellyswitch-E01234/roller/0/pos").get());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void parseTopic() {
+    ShellyTopic topic = ShellyTopicFactory.parseTopic("shellies/shellyswitch25-E01234/roller/0/pos").orElseThrow();
+    assertEquals(new ShellyTopic(SHELLY_25, new DeviceId("E01234", SHELLY_25), "roller", "0/pos", false), topic);
+    topic = ShellyTopicFactory.parseTopic("shellies/shelly1minig3-1234567abcde/events/rpc").orElseThrow();
+    assertEquals(new ShellyTopic(SHELLY_1_MINI_GEN3, new DeviceId("1234567abcde", SHELLY_1_MINI_GEN3), "events", "", true), topic);
+  }
+
+  @Test
+  public void parseInvalidTopic() {
+    assertFalse(ShellyTopicFactory.parseTopic("shellies/announce").isPresent());
+    assertFalse(ShellyTopicFactory.parseTopic("shellies/shelly1-E01234/online").isPresent());
+    assertFalse(ShellyTopicFactory.parseTopic("shellies/unknown-E01234/relay/0").isPresent());
+    assertFalse(ShellyTopicFactory.parseTopic("other/shelly1-E01234/relay/0").isPresent());
+  }
+
+  @Test
+  public void createTopicFilterForRoute() {
+    assertEquals("shellies/+/roller/+/pos", createTopicFilter("roller", "+/pos"));
+    assertEquals("shellies/+/sensor/temperature", createTopicFilter("sensor", "temperature"));
+    assertEquals("shellies/+/events/rpc", createTopicFilter("events", ""));
+  }
+
+  @Test
+  public void parseDeviceIdOfAnnouncement() {
+    assertEquals(Optional.of(new DeviceId("98CDAC1F2A3B", SHELLY_25)), parseDeviceId("shellyswitch25-98CDAC1F2A3B"));
+    assertFalse(parseDeviceId("shellyswitch25-").isPresent());
+    assertFalse(parseDeviceId("shellyplug-s-0A1B2C").isPresent());
+    assertFalse(parseDeviceId("unknown-E01234").isPresent());
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.shelly.StripedShellyMessageDispatcher.OverflowPolicy;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StripedShellyMessageDispatcherTest {
+
+  private static final ShellyTopic RELAY_0 = topic("relay", "0");
+  private static final ShellyTopic RELAY_1 = topic("relay", "1");
+
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final List<String> processed = new ArrayList<>();
+  private final BiConsumer<ShellyTopic, Optional<ByteBuffer>> processor =
+      (topic, payload) -> processed.add(topic.subTopic() + "=" + StandardCharsets.UTF_8.decode(payload.orElseThrow()));
+
+  @Test
+  public void processesMessagesOfDeviceInOrder() {
+    StripedShellyMessageDispatcher dispatcher = new StripedShellyMessageDispatcher(4, 10, OverflowPolicy.BLOCK, tasks::add);
+
+    dispatcher.dispatch(RELAY_0, payload("on"), processor);
+    dispatcher.dispatch(RELAY_1, payload("on"), processor);
+    dispatcher.dispatch(RELAY_0, payload("off"), processor);
+    runTasks();
+
+    assertEquals(List.of("0=on", "1=on", "0=off"), processed);
+  }
+
+  @Test
+  public void copiesPayload() {
+    StripedShellyMessageDispatcher dispatcher = new StripedShellyMessageDispatcher(1, 10, OverflowPolicy.BLOCK, tasks::add);
+    ByteBuffer payload = ByteBuffer.wrap("on".getBytes(StandardCharsets.UTF_8));
+
+    dispatcher.dispatch(RELAY_0, Optional.of(payload), processor);
+    payload.put(0, (byte) 'n');
+    runTasks();
+
+    assertEquals(List.of("0=on"), processed);
+  }
+
+  @Test
+  public void dropsOldestMessageOfFullStripe() {
+    StripedShellyMessageDispatcher dispatcher = new StripedShellyMessageDispatcher(1, 2, OverflowPolicy.DROP_OLDEST, tasks::add);
+
+    dispatcher.dispatch(RELAY_0, payload("on"), processor);
+    dispatcher.dispatch(RELAY_1, payload("on"), processor);
+    dispatcher.dispatch(RELAY_0, payload("off"), processor);
+    runTasks();
+
+    assertEquals(List.of("1=on", "0=off"), processed);
+    assertEquals(1, dispatcher.getDroppedCount());
+  }
+
+  @Test
+  public void coalescesMessagesWithSameTopic() {
+    StripedShellyMessageDispatcher dispatcher = new StripedShellyMessageDispatcher(1, 2, OverflowPolicy.COALESCE, tasks::add);
+
+    dispatcher.dispatch(RELAY_0, payload("on"), processor);
+    dispatcher.dispatch(RELAY_1, payload("on"), processor);
+    dispatcher.dispatch(RELAY_0, payload("off"), processor);
+    runTasks();
+
+    assertEquals(List.of("0=off", "1=on"), processed);
+    assertEquals(1, dispatcher.getCoalescedCount());
+    assertEquals(0, dispatcher.getDroppedCount());
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private static Optional<ByteBuffer> payload(String value) {
+    return Optional.of(ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static ShellyTopic topic(String devicePropertyType, String subTopic) {
+    return new ShellyTopic(ShellyDeviceType.SHELLY_25, new DeviceId("abc", ShellyDeviceType.SHELLY_25), devicePropertyType, subTopic, false);
+  }
+}
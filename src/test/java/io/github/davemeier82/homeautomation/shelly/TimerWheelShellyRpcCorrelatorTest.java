@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelShellyRpcCorrelatorTest {
+
+  private static final String RESPONSE_TOPIC = "shellies/shelly1minig3-1234567abcde/rpc/response/rpc";
+
+  private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+  private final TimerWheelShellyRpcCorrelator correlator = new TimerWheelShellyRpcCorrelator(new ObjectMapper(), Duration.ofMillis(10), 8, timer);
+
+  @AfterEach
+  public void tearDown() {
+    correlator.close();
+    timer.shutdownNow();
+  }
+
+  @Test
+  public void completesRequestWithMatchingResponse() throws Exception {
+    CompletableFuture<ShellyRpcResponse> first = correlator.expect("a-1", Duration.ofMinutes(1));
+    CompletableFuture<ShellyRpcResponse> second = correlator.expect("a-2", Duration.ofMinutes(1));
+    correlator.processMessage(RESPONSE_TOPIC, payload("{\"id\":\"a-2\",\"src\":\"shelly1minig3-1234567abcde\",\"result\":{\"was_on\":true}}"));
+
+    assertFalse(first.isDone());
+    ShellyRpcResponse response = second.get(1, TimeUnit.SECONDS);
+    assertEquals("shelly1minig3-1234567abcde", response.src());
+    assertTrue(response.result().path("was_on").asBoolean());
+    assertEquals(1, correlator.getInFlightCount());
+  }
+
+  @Test
+  public void completesRequestExceptionallyWithErrorResponse() {
+    CompletableFuture<ShellyRpcResponse> future = correlator.expect("a-1", Duration.ofMinutes(1));
+    correlator.processMessage(RESPONSE_TOPIC, payload("{\"id\":\"a-1\",\"error\":{\"code\":-103,\"message\":\"invalid id\"}}"));
+
+    ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+    assertEquals(-103, ((ShellyRpcException) exception.getCause()).getCode());
+  }
+
+  @Test
+  public void timesOutRequestsBeyondOneRevolutionAndDropsLateResponse() {
+    CompletableFuture<ShellyRpcResponse> shortTimeout = correlator.expect("a-1", Duration.ofMillis(20));
+    CompletableFuture<ShellyRpcResponse> longTimeout = correlator.expect("a-2", Duration.ofMillis(150));
+
+    ExecutionException exception = assertThrows(ExecutionException.class, () -> shortTimeout.get(1, TimeUnit.SECONDS));
+    assertTrue(exception.getCause() instanceof TimeoutException);
+    assertFalse(longTimeout.isDone());
+    exception = assertThrows(ExecutionException.class, () -> longTimeout.get(1, TimeUnit.SECONDS));
+    assertTrue(exception.getCause() instanceof TimeoutException);
+
+    correlator.processMessage(RESPONSE_TOPIC, payload("{\"id\":\"a-1\",\"result\":{\"was_on\":false}}"));
+    assertEquals(0, correlator.getInFlightCount());
+    assertEquals(1, correlator.getUnmatchedCount());
+  }
+
+  @Test
+  public void timesOutRequestAfterStalledTimerWithoutWaitingForNextRevolution() throws Exception {
+    CountDownLatch stalled = new CountDownLatch(1);
+    timer.execute(() -> {
+      stalled.countDown();
+      sleep(200);
+    });
+    stalled.await();
+    CompletableFuture<ShellyRpcResponse> future = correlator.expect("a-1", Duration.ofMillis(20));
+
+    ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(250, TimeUnit.MILLISECONDS));
+    assertTrue(exception.getCause() instanceof TimeoutException);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static Optional<ByteBuffer> payload(String json) {
+    return Optional.of(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device;
+
+import io.github.davemeier82.homeautomation.core.device.Device;
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.repositories.DeviceRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_25;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShellyDeviceRegistryTest {
+
+  private static final DeviceId DEVICE_ID = new DeviceId("E01234", SHELLY_25);
+
+  private final AtomicInteger lookups = new AtomicInteger();
+  private final List<String> saved = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void createAndSaveDeviceOnceForConcurrentCalls() throws Exception {
+    ShellyDeviceRegistry registry = new ShellyDeviceRegistry(new ShellyDeviceFactory(), deviceRepository(false));
+    int threads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      List<Future<Device>> devices = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        devices.add(executor.submit(() -> {
+          start.await();
+          return registry.getOrCreate(DEVICE_ID);
+        }));
+      }
+      start.countDown();
+      Device first = devices.get(0).get();
+      for (Future<Device> device : devices) {
+        assertSame(first, device.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(1, lookups.get());
+    assertEquals(List.of("E01234"), saved);
+    assertTrue(registry.isKnown(DEVICE_ID));
+  }
+
+  @Test
+  public void retryAfterFailedLookup() {
+    ShellyDeviceRegistry registry = new ShellyDeviceRegistry(new ShellyDeviceFactory(), deviceRepository(true));
+
+    assertThrows(IllegalStateException.class, () -> registry.getOrCreate(DEVICE_ID));
+    assertFalse(registry.isKnown(DEVICE_ID));
+    registry.getOrCreate(DEVICE_ID);
+
+    assertEquals(2, lookups.get());
+    assertEquals(List.of("E01234"), saved);
+  }
+
+  @Test
+  public void recreateDeviceAfterInvalidation() {
+    ShellyDeviceRegistry registry = new ShellyDeviceRegistry(new ShellyDeviceFactory(), deviceRepository(false));
+    Device deleted = registry.getOrCreate(DEVICE_ID);
+
+    registry.invalidate(DEVICE_ID);
+    assertFalse(registry.isKnown(DEVICE_ID));
+    Device recreated = registry.getOrCreate(DEVICE_ID);
+
+    assertNotSame(deleted, recreated);
+    assertEquals(2, lookups.get());
+    assertEquals(List.of("E01234", "E01234"), saved);
+    registry.invalidateAll();
+    assertEquals(0, registry.size());
+  }
+
+  private DeviceRepository deviceRepository(boolean failFirstLookup) {
+    return (DeviceRepository) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DeviceRepository.class}, (proxy, method, args) -> {
+      if (method.getName().equals("save")) {
+        saved.add(((Device) args[0]).getId());
+        return null;
+      }
+      if (method.getName().equals("getByDeviceId")) {
+        if (lookups.incrementAndGet() == 1 && failFirstLookup) {
+          throw new IllegalStateException("repository unavailable");
+        }
+        Thread.sleep(50);
+      }
+      return method.getReturnType() == Optional.class ? Optional.empty() : null;
+    });
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.aggregation;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import io.github.davemeier82.homeautomation.shelly.device.aggregation.WindowedShellyPowerAggregator.Statistic;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WindowedShellyPowerAggregatorTest {
+
+  private static final DevicePropertyId PROPERTY_ID = new DevicePropertyId(new DeviceId("abc", ShellyDeviceType.SHELLY_25), "0");
+
+  private final MutableClock clock = new MutableClock();
+  private final List<Double> published = new ArrayList<>();
+
+  @Test
+  public void publishesStatisticOncePerWindow() {
+    WindowedShellyPowerAggregator aggregator = aggregator(Statistic.MEAN);
+
+    assertTrue(aggregator.aggregate(PROPERTY_ID, 10, OffsetDateTime.now(clock), "abc: Power"));
+    assertTrue(aggregator.aggregate(PROPERTY_ID, 20, OffsetDateTime.now(clock), "abc: Power"));
+    aggregator.flush();
+    aggregator.flush();
+
+    assertEquals(List.of(15d), published);
+  }
+
+  @Test
+  public void publishesMinMaxAndLast() {
+    assertEquals(List.of(5d), publishSamples(Statistic.MIN));
+    assertEquals(List.of(30d), publishSamples(Statistic.MAX));
+    assertEquals(List.of(20d), publishSamples(Statistic.LAST));
+  }
+
+  @Test
+  public void weightsSamplesByDuration() {
+    WindowedShellyPowerAggregator aggregator = aggregator(Statistic.TIME_WEIGHTED_MEAN);
+
+    aggregator.aggregate(PROPERTY_ID, 100, OffsetDateTime.now(clock), "abc: Power");
+    clock.advance(Duration.ofSeconds(9));
+    aggregator.aggregate(PROPERTY_ID, 0, OffsetDateTime.now(clock), "abc: Power");
+    clock.advance(Duration.ofSeconds(1));
+    aggregator.flush();
+    clock.advance(Duration.ofSeconds(5));
+    aggregator.aggregate(PROPERTY_ID, 40, OffsetDateTime.now(clock), "abc: Power");
+    clock.advance(Duration.ofSeconds(5));
+    aggregator.flush();
+
+    assertEquals(List.of(90d, 20d), published);
+  }
+
+  @Test
+  public void weightsSamplesByReceiveTime() {
+    WindowedShellyPowerAggregator aggregator = aggregator(Statistic.TIME_WEIGHTED_MEAN);
+    OffsetDateTime start = OffsetDateTime.now(clock);
+    clock.advance(Duration.ofSeconds(10));
+
+    aggregator.aggregate(PROPERTY_ID, 100, start, "abc: Power");
+    aggregator.aggregate(PROPERTY_ID, 0, start.plusSeconds(9), "abc: Power");
+    aggregator.flush();
+
+    assertEquals(List.of(90d), published);
+  }
+
+  private List<Double> publishSamples(Statistic statistic) {
+    published.clear();
+    WindowedShellyPowerAggregator aggregator = aggregator(statistic);
+    aggregator.aggregate(PROPERTY_ID, 5, OffsetDateTime.now(clock), "abc: Power");
+    aggregator.aggregate(PROPERTY_ID, 30, OffsetDateTime.now(clock), "abc: Power");
+    aggregator.aggregate(PROPERTY_ID, 20, OffsetDateTime.now(clock), "abc: Power");
+    aggregator.flush();
+    return new ArrayList<>(published);
+  }
+
+  private WindowedShellyPowerAggregator aggregator(Statistic statistic) {
+    return new WindowedShellyPowerAggregator((power, time, devicePropertyId, displayName) -> published.add(power), clock, Duration.ofSeconds(10), statistic, null);
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant instant = Instant.parse("2024-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneOffset getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.command;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LatestWinsShellyCommandCoalescerTest {
+
+  private static final DevicePropertyId DIMMER = new DevicePropertyId(new DeviceId("abc", ShellyDeviceType.SHELLY_DIMMER_2), "0");
+  private static final DevicePropertyId OTHER_DIMMER = new DevicePropertyId(new DeviceId("def", ShellyDeviceType.SHELLY_DIMMER_2), "0");
+
+  private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+  private final List<String> published = new CopyOnWriteArrayList<>();
+
+  @AfterEach
+  public void tearDown() {
+    timer.shutdownNow();
+  }
+
+  @Test
+  public void publishesFirstCommandAtOnceAndLatestAfterFlush() {
+    LatestWinsShellyCommandCoalescer coalescer = new LatestWinsShellyCommandCoalescer(Duration.ofHours(1), timer);
+    for (int level = 10; level <= 50; level += 10) {
+      String command = "abc=" + level;
+      coalescer.submit(DIMMER, () -> published.add(command));
+    }
+    coalescer.submit(OTHER_DIMMER, () -> published.add("def=70"));
+
+    assertEquals(List.of("abc=10", "def=70"), published);
+    assertEquals(1, coalescer.getPendingCount());
+    coalescer.flush();
+
+    assertEquals(List.of("abc=10", "def=70", "abc=50"), published);
+    assertEquals(0, coalescer.getPendingCount());
+  }
+
+  @Test
+  public void publishesLatestCommandAfterInterval() throws InterruptedException {
+    LatestWinsShellyCommandCoalescer coalescer = new LatestWinsShellyCommandCoalescer(Duration.ofMillis(20), timer);
+    coalescer.submit(DIMMER, () -> published.add("abc=10"));
+    coalescer.submit(DIMMER, () -> published.add("abc=20"));
+    coalescer.submit(DIMMER, () -> published.add("abc=30"));
+    Thread.sleep(200);
+
+    assertEquals(List.of("abc=10", "abc=30"), published);
+    coalescer.submit(DIMMER, () -> published.add("abc=40"));
+
+    assertEquals(List.of("abc=10", "abc=30", "abc=40"), published);
+  }
+
+  @Test
+  public void throwsFailureOfImmediateCommand() {
+    LatestWinsShellyCommandCoalescer coalescer = new LatestWinsShellyCommandCoalescer(Duration.ofHours(1), timer);
+    assertThrows(IllegalStateException.class, () -> coalescer.submit(DIMMER, () -> {
+      throw new IllegalStateException("disconnected");
+    }));
+    coalescer.submit(DIMMER, () -> published.add("abc=20"));
+    coalescer.flush();
+
+    assertEquals(List.of("abc=20"), published);
+  }
+
+  @Test
+  public void publishesNothingOnTimerAfterClose() throws InterruptedException {
+    LatestWinsShellyCommandCoalescer coalescer = new LatestWinsShellyCommandCoalescer(Duration.ofMillis(20), timer);
+    coalescer.submit(DIMMER, () -> published.add("abc=10"));
+    coalescer.submit(DIMMER, () -> published.add("abc=20"));
+    coalescer.close();
+    coalescer.submit(DIMMER, () -> published.add("abc=30"));
+    coalescer.submit(DIMMER, () -> published.add("abc=40"));
+    Thread.sleep(100);
+
+    assertEquals(List.of("abc=10", "abc=20", "abc=30", "abc=40"), published);
+    assertEquals(0, coalescer.getPendingCount());
+  }
+}
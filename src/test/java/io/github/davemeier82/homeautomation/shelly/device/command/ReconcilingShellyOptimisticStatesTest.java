@@ -0,0 +1,136 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.command;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.core.device.property.RollerState;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueFilter;
+import io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind;
+import io.github.davemeier82.homeautomation.shelly.device.property.ShellyPropertyHandleRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.RELAY_STATE;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.ROLLER_STATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReconcilingShellyOptimisticStatesTest {
+
+  private static final DeviceId DEVICE_ID = new DeviceId("abc", ShellyDeviceType.SHELLY_25);
+  private static final DevicePropertyId PROPERTY_ID = new DevicePropertyId(DEVICE_ID, "0");
+
+  private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+  private final ShellyPropertyHandleRegistry propertyHandles = new ShellyPropertyHandleRegistry();
+  private final List<String> published = new CopyOnWriteArrayList<>();
+  private final Clock clock = Clock.fixed(Instant.parse("2024-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+  @AfterEach
+  public void tearDown() {
+    timer.shutdownNow();
+  }
+
+  @Test
+  public void publishesCommandedStateAndDropsItsConfirmation() {
+    ReconcilingShellyOptimisticStates states = states(Duration.ofHours(1));
+    ShellyValueFilter filter = states.observe(ShellyValueFilter.NONE);
+    propertyHandles.get(DEVICE_ID, "0", RELAY_STATE, id -> "abc: Relay0");
+    filter.accept(PROPERTY_ID, RELAY_STATE, false);
+
+    states.relayCommanded(PROPERTY_ID, true);
+
+    assertEquals(List.of("abc: Relay0=true@2024-01-01T00:00Z"), published);
+    assertTrue(states.isPending(PROPERTY_ID));
+    assertFalse(filter.accept(PROPERTY_ID, RELAY_STATE, true));
+    assertFalse(states.isPending(PROPERTY_ID));
+    assertTrue(filter.accept(PROPERTY_ID, RELAY_STATE, true));
+  }
+
+  @Test
+  public void publishesDeviatingReportEvenIfFilterDropsIt() {
+    ReconcilingShellyOptimisticStates states = states(Duration.ofHours(1));
+    ShellyValueFilter filter = states.observe(rejectAll());
+    propertyHandles.get(DEVICE_ID, "0", ROLLER_STATE, id -> "abc: Roller State");
+
+    states.rollerCommanded(PROPERTY_ID, RollerState.OPENING);
+
+    assertTrue(filter.accept(PROPERTY_ID, ROLLER_STATE, RollerState.IDLE));
+    assertFalse(filter.accept(PROPERTY_ID, ROLLER_STATE, RollerState.IDLE));
+    assertEquals(0, states.getPendingCount());
+  }
+
+  @Test
+  public void restoresReportedStateWithoutConfirmation() throws InterruptedException {
+    ReconcilingShellyOptimisticStates states = states(Duration.ofMillis(20));
+    propertyHandles.get(DEVICE_ID, "0", RELAY_STATE, id -> "abc: Relay0");
+    states.observe(ShellyValueFilter.NONE).accept(PROPERTY_ID, RELAY_STATE, false);
+
+    states.relayCommanded(PROPERTY_ID, true);
+    Thread.sleep(200);
+
+    assertEquals(List.of("abc: Relay0=true@2024-01-01T00:00Z", "abc: Relay0=false@2024-01-01T00:00Z"), published);
+    assertFalse(states.isPending(PROPERTY_ID));
+  }
+
+  @Test
+  public void ignoresPropertiesWithoutReportedState() {
+    ReconcilingShellyOptimisticStates states = states(Duration.ofHours(1));
+
+    states.relayCommanded(PROPERTY_ID, true);
+
+    assertTrue(published.isEmpty());
+    assertEquals(0, states.getPendingCount());
+  }
+
+  private ReconcilingShellyOptimisticStates states(Duration timeout) {
+    return new ReconcilingShellyOptimisticStates(
+        (value, time, devicePropertyId, displayName) -> published.add(displayName + "=" + value + "@" + time),
+        (value, time, devicePropertyId, displayName) -> published.add(displayName + "=" + value + "@" + time),
+        propertyHandles, timeout, timer, clock);
+  }
+
+  private static ShellyValueFilter rejectAll() {
+    return new ShellyValueFilter() {
+      @Override
+      public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, boolean value) {
+        return false;
+      }
+
+      @Override
+      public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, Enum<?> value) {
+        return false;
+      }
+
+      @Override
+      public boolean accept(DevicePropertyId devicePropertyId, ShellyValueKind kind, double value) {
+        return false;
+      }
+    };
+  }
+}
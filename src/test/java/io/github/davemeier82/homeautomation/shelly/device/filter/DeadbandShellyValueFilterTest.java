@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.filter;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import io.github.davemeier82.homeautomation.shelly.device.filter.DeadbandShellyValueFilter.Deadband;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.BATTERY_LEVEL;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.RELAY_STATE;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.TEMPERATURE;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadbandShellyValueFilterTest {
+
+  private static final DevicePropertyId PROPERTY_ID = new DevicePropertyId(new DeviceId("abc", ShellyDeviceType.SHELLY_HT), "temperature");
+
+  private final MutableClock clock = new MutableClock();
+
+  @Test
+  public void dropsRepeatedStates() {
+    DeadbandShellyValueFilter filter = new DeadbandShellyValueFilter(clock, Deadband.EXACT);
+
+    assertTrue(filter.accept(PROPERTY_ID, RELAY_STATE, true));
+    assertFalse(filter.accept(PROPERTY_ID, RELAY_STATE, true));
+    assertTrue(filter.accept(PROPERTY_ID, RELAY_STATE, false));
+  }
+
+  @Test
+  public void dropsValuesWithinDeadbandUntilMaxSilenceElapsed() {
+    DeadbandShellyValueFilter filter = new DeadbandShellyValueFilter(clock, new Deadband(0.2, 0, Duration.ofMinutes(15)));
+
+    assertTrue(filter.accept(PROPERTY_ID, TEMPERATURE, 21.0));
+    assertFalse(filter.accept(PROPERTY_ID, TEMPERATURE, 21.1));
+    assertTrue(filter.accept(PROPERTY_ID, TEMPERATURE, 21.3));
+    clock.advance(Duration.ofMinutes(14));
+    assertFalse(filter.accept(PROPERTY_ID, TEMPERATURE, 21.3));
+    clock.advance(Duration.ofMinutes(1));
+    assertTrue(filter.accept(PROPERTY_ID, TEMPERATURE, 21.3));
+  }
+
+  @Test
+  public void usesDeadbandOfKind() {
+    DeadbandShellyValueFilter filter = new DeadbandShellyValueFilter(clock, Deadband.EXACT, Map.of(BATTERY_LEVEL, new Deadband(0, 10, null)));
+
+    assertTrue(filter.accept(PROPERTY_ID, BATTERY_LEVEL, 80));
+    assertFalse(filter.accept(PROPERTY_ID, BATTERY_LEVEL, 75));
+    assertTrue(filter.accept(PROPERTY_ID, BATTERY_LEVEL, 70));
+    assertTrue(filter.accept(PROPERTY_ID, TEMPERATURE, 20));
+    assertTrue(filter.accept(PROPERTY_ID, TEMPERATURE, 20.01));
+  }
+
+  @Test
+  public void resetForwardsNextValue() {
+    DeadbandShellyValueFilter filter = new DeadbandShellyValueFilter(clock, Deadband.EXACT);
+
+    assertTrue(filter.accept(PROPERTY_ID, TEMPERATURE, 20));
+    assertFalse(filter.accept(PROPERTY_ID, TEMPERATURE, 20));
+    filter.reset(PROPERTY_ID);
+    assertTrue(filter.accept(PROPERTY_ID, TEMPERATURE, 20));
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant instant = Instant.parse("2024-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneOffset getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
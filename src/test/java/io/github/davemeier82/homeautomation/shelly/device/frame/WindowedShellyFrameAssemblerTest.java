@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.frame;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WindowedShellyFrameAssemblerTest {
+
+  private static final DeviceId DEVICE_ID = new DeviceId("abc", ShellyDeviceType.SHELLY_HT);
+  private static final DeviceId OTHER_DEVICE_ID = new DeviceId("def", ShellyDeviceType.SHELLY_HT);
+  private static final OffsetDateTime WAKE_UP = OffsetDateTime.parse("2024-01-01T00:00Z");
+
+  private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+  private final WindowedShellyFrameAssembler assembler = new WindowedShellyFrameAssembler(Duration.ofHours(1), timer);
+  private final List<String> delivered = new ArrayList<>();
+
+  @AfterEach
+  public void tearDown() {
+    timer.shutdownNow();
+  }
+
+  @Test
+  public void deliversValuesOfWakeUpWithTimeOfFirstValue() {
+    assembler.add(DEVICE_ID, WAKE_UP, time -> delivered.add("temperature@" + time));
+    assembler.add(DEVICE_ID, WAKE_UP.plusNanos(200_000_000), time -> delivered.add("humidity@" + time));
+    assertTrue(delivered.isEmpty());
+    assembler.flush();
+
+    assertEquals(List.of("temperature@2024-01-01T00:00Z", "humidity@2024-01-01T00:00Z"), delivered);
+    assertEquals(0, assembler.getOpenFrameCount());
+  }
+
+  @Test
+  public void opensFramePerDevice() {
+    assembler.add(DEVICE_ID, WAKE_UP, time -> delivered.add("abc@" + time));
+    assembler.add(OTHER_DEVICE_ID, WAKE_UP.plusSeconds(1), time -> delivered.add("def@" + time));
+
+    assertEquals(2, assembler.getOpenFrameCount());
+    assembler.flush();
+
+    assertEquals(2, delivered.size());
+    assertTrue(delivered.contains("def@2024-01-01T00:00:01Z"));
+  }
+
+  @Test
+  public void startsNewFrameAfterDelivery() {
+    assembler.add(DEVICE_ID, WAKE_UP, time -> delivered.add("battery@" + time));
+    assembler.flush();
+    assembler.add(DEVICE_ID, WAKE_UP.plusMinutes(5), time -> delivered.add("battery@" + time));
+    assembler.flush();
+
+    assertEquals(List.of("battery@2024-01-01T00:00Z", "battery@2024-01-01T00:05Z"), delivered);
+  }
+
+  @Test
+  public void notifiesListenerOncePerFrame() {
+    List<String> frames = new ArrayList<>();
+    WindowedShellyFrameAssembler listening = new WindowedShellyFrameAssembler(Duration.ofHours(1), timer,
+        (deviceId, time, valueCount) -> frames.add(deviceId.id() + "@" + time + ":" + valueCount));
+    listening.add(DEVICE_ID, WAKE_UP, time -> delivered.add("temperature@" + time));
+    listening.add(DEVICE_ID, WAKE_UP, time -> delivered.add("humidity@" + time));
+    listening.add(DEVICE_ID, WAKE_UP, time -> delivered.add("battery@" + time));
+    listening.flush();
+
+    assertEquals(3, delivered.size());
+    assertEquals(List.of("abc@2024-01-01T00:00Z:3"), frames);
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.messageprocessor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.shelly.ShellyTopic;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static io.github.davemeier82.homeautomation.shelly.ShellyTopicFactory.parseTopic;
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_25;
+import static io.github.davemeier82.homeautomation.shelly.device.messageprocessor.ShellyMessageRoute.forDeviceTypes;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShellyMessageRouterTest {
+
+  private final ShellyMessageHandler relayHandler = (topic, payload, receivedAt) -> {
+  };
+  private final ShellyMessageHandler positionHandler = (topic, payload, receivedAt) -> {
+  };
+  private final ShellyMessageHandler rollerHandler = (topic, payload, receivedAt) -> {
+  };
+
+  @Test
+  public void findHandler() {
+    ShellyMessageRouter router = new ShellyMessageRouter(Set.of(processor(forDeviceTypes(Set.of(SHELLY_25))
+        .route("relay", "+", relayHandler)
+        .route("roller", "0", rollerHandler)
+        .route("roller", "+/pos", positionHandler)
+        .build())));
+
+    assertSame(relayHandler, router.findHandler(topic("shellies/shellyswitch25-E01234/relay/1")));
+    assertSame(rollerHandler, router.findHandler(topic("shellies/shellyswitch25-E01234/roller/0")));
+    assertSame(positionHandler, router.findHandler(topic("shellies/shellyswitch25-E01234/roller/0/pos")));
+    assertNull(router.findHandler(topic("shellies/shellyswitch25-E01234/relay/0/command")));
+    assertNull(router.findHandler(topic("shellies/shellyswitch25-E01234/roller/1")));
+    assertNull(router.findHandler(topic("shellies/shellyswitch25-E01234/input/0")));
+    assertNull(router.findHandler(topic("shellies/shellyswitch-E01234/relay/0")));
+    assertTrue(router.supportsDeviceType(SHELLY_25));
+    assertFalse(router.supportsDeviceType(ShellyDeviceType.SHELLY_2));
+  }
+
+  @Test
+  public void routeShelly25Topics() {
+    ShellyMessageRouter router = new ShellyMessageRouter(Set.of(new Shelly25MessageProcessor(null, null, null, null)));
+
+    assertNotNull(router.findHandler(topic("shellies/shellyswitch25-E01234/relay/0")));
+    assertNotNull(router.findHandler(topic("shellies/shellyswitch25-E01234/relay/1")));
+    assertNotNull(router.findHandler(topic("shellies/shellyswitch25-E01234/roller/0")));
+    assertNotNull(router.findHandler(topic("shellies/shellyswitch25-E01234/roller/0/pos")));
+    assertNotNull(router.findHandler(topic("shellies/shellyswitch25-E01234/power/0")));
+    assertNull(router.findHandler(topic("shellies/shellyswitch25-E01234/relay/0/command")));
+    assertNull(router.findHandler(topic("shellies/shellyswitch25-E01234/roller/0/command/pos")));
+  }
+
+  @Test
+  public void routeGen2RpcEvents() {
+    ShellyMessageRouter router = new ShellyMessageRouter(Set.of(new Shelly1MiniGen3MessageProcessor(null, new ObjectMapper())));
+
+    assertNotNull(router.findHandler(topic("shellies/shelly1minig3-1234567abcde/events/rpc")));
+    assertNull(router.findHandler(topic("shellies/shelly1minig3-1234567abcde/relay/0")));
+  }
+
+  @Test
+  public void routeBothDoorWindowVersions() {
+    ShellyMessageRouter router = new ShellyMessageRouter(Set.of(new ShellyDoorWindowMessageProcessor(null, null, null)));
+
+    assertNotNull(router.findHandler(topic("shellies/shellydw-E01234/sensor/state")));
+    assertNotNull(router.findHandler(topic("shellies/shellydw2-E01234/sensor/state")));
+    assertNotNull(router.findHandler(topic("shellies/shellydw2-E01234/sensor/tilt")));
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void acceptDeprecatedDoorWindow2ProcessorNextToDoorWindowProcessor() {
+    ShellyMessageRouter router = new ShellyMessageRouter(List.of(new ShellyDoorWindowMessageProcessor(null, null, null),
+        new ShellyDoorWindow2MessageProcessor(null, null, null)));
+
+    assertNotNull(router.findHandler(topic("shellies/shellydw2-E01234/sensor/state")));
+  }
+
+  @Test
+  public void rejectDuplicateRoutes() {
+    ShellyDeviceMessageProcessor processor = processor(forDeviceTypes(Set.of(SHELLY_25)).route("relay", "+", relayHandler).build());
+    ShellyDeviceMessageProcessor duplicate = processor(forDeviceTypes(Set.of(SHELLY_25)).route("relay", "+", rollerHandler).build());
+    assertThrows(IllegalStateException.class, () -> new ShellyMessageRouter(List.of(processor, duplicate)));
+  }
+
+  @Test
+  public void routeMessagesOfLegacyProcessorsToProcessMessage() {
+    List<String> processed = new ArrayList<>();
+    ShellyDeviceMessageProcessor legacy = new ShellyDeviceMessageProcessor() {
+      @Override
+      public Set<ShellyDeviceType> getSupportedDeviceTypes() {
+        return Set.of(ShellyDeviceType.SHELLY_2);
+      }
+
+      @Override
+      public void processMessage(String subTopic, Optional<ByteBuffer> payload, DeviceId deviceId, String devicePropertyType) {
+        processed.add(deviceId.id() + " " + devicePropertyType + " " + subTopic + " " + payload.map(byteBuffer -> StandardCharsets.US_ASCII.decode(byteBuffer).toString()).orElseThrow());
+      }
+    };
+    ShellyMessageRouter router = new ShellyMessageRouter(List.of(legacy));
+    ShellyTopic topic = topic("shellies/shellyswitch-E01234/input/0");
+
+    router.findHandler(topic).handle(topic, ByteBuffer.wrap("1".getBytes(StandardCharsets.US_ASCII)), OffsetDateTime.now());
+
+    assertEquals(List.of("E01234 input 0 1"), processed);
+    assertTrue(router.supportsDeviceType(ShellyDeviceType.SHELLY_2));
+  }
+
+  @Test
+  public void processMessageOfRoutedProcessorCallsItsHandler() {
+    List<ShellyTopic> handled = new ArrayList<>();
+    ShellyDeviceMessageProcessor processor = processor(forDeviceTypes(Set.of(SHELLY_25))
+        .route("relay", "+", (topic, payload, receivedAt) -> handled.add(topic))
+        .build());
+
+    processor.processMessage("1", Optional.of(ByteBuffer.wrap("on".getBytes(StandardCharsets.US_ASCII))), new DeviceId("E01234", SHELLY_25), "relay");
+
+    assertEquals(List.of(topic("shellies/shellyswitch25-E01234/relay/1")), handled);
+  }
+
+  private static ShellyTopic topic(String topic) {
+    return parseTopic(topic).orElseThrow();
+  }
+
+  private static ShellyDeviceMessageProcessor processor(List<ShellyMessageRoute> routes) {
+    return new ShellyDeviceMessageProcessor() {
+      @Override
+      public Set<ShellyDeviceType> getSupportedDeviceTypes() {
+        return Set.of(SHELLY_25);
+      }
+
+      @Override
+      public List<ShellyMessageRoute> getRoutes() {
+        return routes;
+      }
+    };
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.property;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Function;
+
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.ROLLER_POSITION;
+import static io.github.davemeier82.homeautomation.shelly.device.filter.ShellyValueKind.ROLLER_STATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ShellyPropertyHandleRegistryTest {
+
+  private static final DeviceId DEVICE_ID = new DeviceId("abc", ShellyDeviceType.SHELLY_25);
+  private static final Function<DevicePropertyId, String> POSITION_NAME = id -> id.deviceId().id() + ": Roller Position";
+  private static final Function<DevicePropertyId, String> STATE_NAME = id -> id.deviceId().id() + ": Roller State";
+
+  private final ShellyPropertyHandleRegistry registry = new ShellyPropertyHandleRegistry();
+
+  @Test
+  public void reusesHandle() {
+    ShellyPropertyHandle handle = registry.get(DEVICE_ID, "0/pos", ROLLER_POSITION, POSITION_NAME);
+
+    assertSame(handle, registry.get(new DeviceId("abc", ShellyDeviceType.SHELLY_25), "0/pos", ROLLER_POSITION, POSITION_NAME));
+    assertEquals(new DevicePropertyId(DEVICE_ID, "0"), handle.devicePropertyId());
+    assertEquals("abc: Roller Position", handle.displayName());
+  }
+
+  @Test
+  public void sharesDevicePropertyIdBetweenKinds() {
+    ShellyPropertyHandle position = registry.get(DEVICE_ID, "0/pos", ROLLER_POSITION, POSITION_NAME);
+    ShellyPropertyHandle state = registry.get(DEVICE_ID, "0", ROLLER_STATE, STATE_NAME);
+
+    assertNotSame(position, state);
+    assertSame(position.devicePropertyId(), state.devicePropertyId());
+    assertEquals("abc: Roller State", state.displayName());
+  }
+
+  @Test
+  public void findsHandleByDevicePropertyId() {
+    ShellyPropertyHandle position = registry.get(DEVICE_ID, "0/pos", ROLLER_POSITION, POSITION_NAME);
+
+    assertSame(position, registry.find(new DevicePropertyId(DEVICE_ID, "0"), ROLLER_POSITION));
+    assertNull(registry.find(new DevicePropertyId(DEVICE_ID, "0"), ROLLER_STATE));
+    assertNull(registry.find(new DevicePropertyId(DEVICE_ID, "1"), ROLLER_POSITION));
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.property.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShellyBulkCommandExecutorTest {
+
+  @Test
+  public void publishesOnCallingThreadWithoutThreads() {
+    ShellyBulkCommandExecutor executor = new ShellyBulkCommandExecutor(0);
+    Thread[] publisher = new Thread[1];
+    executor.execute(() -> publisher[0] = Thread.currentThread());
+    assertEquals(Thread.currentThread(), publisher[0]);
+  }
+
+  @Test
+  public void publishesOnDaemonThread() throws Exception {
+    ShellyBulkCommandExecutor executor = new ShellyBulkCommandExecutor(1);
+    CompletableFuture<Thread> publisher = new CompletableFuture<>();
+    executor.execute(() -> publisher.complete(Thread.currentThread()));
+
+    Thread thread = publisher.get(5, TimeUnit.SECONDS);
+    assertEquals("shelly-command-publisher", thread.getName());
+    assertTrue(thread.isDaemon());
+    executor.close();
+  }
+
+  @Test
+  public void rejectsCommandsAfterClose() {
+    ShellyBulkCommandExecutor executor = new ShellyBulkCommandExecutor(1);
+    executor.close();
+    assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+    }));
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.property.controller;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_25;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ShellyCommandTopicCacheTest {
+
+  private static final DevicePropertyId FIRST = new DevicePropertyId(new DeviceId("A1", SHELLY_25), "0");
+  private static final DevicePropertyId SECOND = new DevicePropertyId(new DeviceId("A1", SHELLY_25), "1");
+  private static final DevicePropertyId THIRD = new DevicePropertyId(new DeviceId("B2", SHELLY_25), "0");
+
+  private final AtomicInteger resolved = new AtomicInteger();
+  private final ShellyCommandTopicCache<String> cache = new ShellyCommandTopicCache<>(devicePropertyId -> {
+    resolved.incrementAndGet();
+    return "shellies/shellyswitch25-" + devicePropertyId.deviceId().id() + "/roller/" + devicePropertyId.id() + "/command";
+  }, 2);
+
+  @Test
+  public void resolvesTopicsOnFirstUseOnly() {
+    String topic = cache.get(FIRST);
+
+    assertEquals("shellies/shellyswitch25-A1/roller/0/command", topic);
+    assertSame(topic, cache.get(FIRST));
+    assertEquals(1, resolved.get());
+  }
+
+  @Test
+  public void evictsPropertyNotCommandedSinceItWasAddedWhenFull() {
+    cache.get(FIRST);
+    cache.get(SECOND);
+    cache.get(FIRST);
+    assertEquals(2, cache.size());
+    assertEquals(2, resolved.get());
+
+    cache.get(THIRD);
+    assertEquals(2, cache.size());
+    cache.get(FIRST);
+    assertEquals(3, resolved.get());
+    cache.get(SECOND);
+    assertEquals(4, resolved.get());
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.device.property.controller;
+
+import io.github.davemeier82.homeautomation.core.device.DeviceId;
+import io.github.davemeier82.homeautomation.core.device.property.DevicePropertyId;
+import io.github.davemeier82.homeautomation.core.mqtt.MqttClient;
+import io.github.davemeier82.homeautomation.shelly.SequentialShellyRpcIdGenerator;
+import io.github.davemeier82.homeautomation.shelly.ShellyMetrics;
+import io.github.davemeier82.homeautomation.shelly.ShellyRpcCorrelator;
+import io.github.davemeier82.homeautomation.shelly.ShellyRpcResponse;
+import io.github.davemeier82.homeautomation.shelly.device.command.ShellyOptimisticStates;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_1;
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_1_MINI_GEN3;
+import static io.github.davemeier82.homeautomation.shelly.device.ShellyDeviceType.SHELLY_DIMMER_2;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShellyRelayDevicePropertyControllerTest {
+
+  private final List<String> published = new ArrayList<>();
+  private final MqttClient mqttClient = (topic, message) -> published.add(topic + " " + message);
+  private final List<String> commanded = new ArrayList<>();
+  private final ShellyOptimisticStates optimisticStates = new ShellyOptimisticStates() {
+    @Override
+    public void relayCommanded(DevicePropertyId devicePropertyId, boolean on) {
+      commanded.add(devicePropertyId.deviceId().id() + " " + on);
+    }
+  };
+
+  @Test
+  public void turnOffGen1AndGen3RelaysInOneBatch() {
+    List<Runnable> tasks = new ArrayList<>();
+    Executor executor = tasks::add;
+    ShellyRelayDevicePropertyController controller = new ShellyRelayDevicePropertyController(mqttClient, new SequentialShellyRpcIdGenerator("n"),
+        ShellyMetrics.NONE, executor, ShellyRpcCorrelator.NONE, optimisticStates);
+
+    CompletableFuture<Void> completion = controller.turnOff(List.of(
+        new DevicePropertyId(new DeviceId("22F000", SHELLY_1), "0"),
+        new DevicePropertyId(new DeviceId("40915156AC0F", SHELLY_DIMMER_2), "0"),
+        new DevicePropertyId(new DeviceId("1234567abcde", SHELLY_1_MINI_GEN3), "0")));
+
+    assertEquals(3, tasks.size());
+    assertTrue(published.isEmpty());
+    assertTrue(commanded.isEmpty());
+    tasks.get(0).run();
+    assertEquals(List.of("22F000 false"), commanded);
+    assertFalse(completion.isDone());
+    tasks.subList(1, 3).forEach(Runnable::run);
+
+    assertTrue(completion.isDone());
+    assertFalse(completion.isCompletedExceptionally());
+    assertEquals("shellies/shelly1-22F000/relay/0/command off", published.get(0));
+    assertEquals("shellies/shellydimmer2-40915156AC0F/light/0/command off", published.get(1));
+    assertTrue(published.get(2).startsWith("shellies/shelly1minig3-1234567abcde/rpc {"));
+    assertTrue(published.get(2).contains("\"on\":false"));
+    assertEquals(List.of("22F000 false", "40915156AC0F false", "1234567abcde false"), commanded);
+  }
+
+  @Test
+  public void completesGen3CommandWithResponseOfRpcId() {
+    List<String> expected = new ArrayList<>();
+    CompletableFuture<ShellyRpcResponse> response = new CompletableFuture<>();
+    ShellyRelayDevicePropertyController controller = new ShellyRelayDevicePropertyController(mqttClient, new SequentialShellyRpcIdGenerator("n"),
+        ShellyMetrics.NONE, Runnable::run, (id, timeout) -> {
+      expected.add(id + " " + timeout);
+      return response;
+    }, ShellyOptimisticStates.NONE);
+
+    CompletableFuture<ShellyRpcResponse> completion = controller.turnOn(new DevicePropertyId(new DeviceId("1234567abcde", SHELLY_1_MINI_GEN3), "0"),
+        Duration.ofSeconds(5));
+
+    assertEquals(List.of("n-1 PT5S"), expected);
+    assertTrue(published.get(0).contains("\"id\":\"n-1\""));
+    assertSame(response, completion);
+  }
+
+  @Test
+  public void failedPublishCompletesBatchExceptionallyAndKeepsOptimisticStatesOfOthers() {
+    MqttClient failingClient = (topic, message) -> {
+      if (topic.contains("22F000")) {
+        throw new IllegalStateException("disconnected");
+      }
+      published.add(topic + " " + message);
+    };
+    ShellyRelayDevicePropertyController controller = new ShellyRelayDevicePropertyController(failingClient, new SequentialShellyRpcIdGenerator(), ShellyMetrics.NONE,
+        Runnable::run, ShellyRpcCorrelator.NONE, optimisticStates);
+
+    CompletableFuture<Void> completion = controller.turnOn(List.of(
+        new DevicePropertyId(new DeviceId("22F000", SHELLY_1), "0"),
+        new DevicePropertyId(new DeviceId("22F001", SHELLY_1), "0")));
+
+    assertTrue(completion.isCompletedExceptionally());
+    assertEquals(List.of("22F001 true"), commanded);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.davemeier82.homeautomation.shelly.mapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static io.github.davemeier82.homeautomation.shelly.mapper.PayloadMapper.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadMapperTest {
+
+  @Test
+  public void matchKeywords() {
+    assertTrue(equalsAsciiIgnoreCase(payload("ON"), "on"));
+    assertTrue(equalsAscii(payload("open"), "open"));
+    assertFalse(equalsAscii(payload("Open"), "open"));
+    assertFalse(equalsAsciiIgnoreCase(payload("off"), "on"));
+    assertFalse(equalsAsciiIgnoreCase(payload(""), "on"));
+  }
+
+  @Test
+  public void parseNumbers() {
+    assertEquals(42, parseInt(payload("42")));
+    assertEquals(-7, parseInt(payload("-7")));
+    assertEquals(23.45f, parseFloat(payload("23.45")));
+    assertEquals(-0.5f, parseFloat(payload("-0.5")));
+    assertEquals(1234.567, parseDouble(payload("1234.567")));
+    assertEquals(0.1, parseDouble(payload("0.1")));
+    assertEquals(12.0, parseDouble(payload("12")));
+    assertEquals(1.5e3, parseDouble(payload("1.5e3")));
+    assertEquals(0.123456789012345678, parseDouble(payload("0.123456789012345678")));
+    assertThrows(NumberFormatException.class, () -> parseInt(payload("on")));
+    assertThrows(NumberFormatException.class, () -> parseDouble(payload("")));
+  }
+
+  @Test
+  public void keepsBufferPosition() {
+    ByteBuffer payload = payload("xx21.5").position(2);
+    assertEquals(21.5, parseDouble(payload));
+    assertEquals("21.5", PayloadMapper.toString(payload));
+    assertEquals(2, payload.position());
+  }
+
+  private static ByteBuffer payload(String message) {
+    return ByteBuffer.wrap(message.getBytes(UTF_8));
+  }
+}